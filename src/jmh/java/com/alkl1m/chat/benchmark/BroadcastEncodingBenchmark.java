@@ -0,0 +1,87 @@
+package com.alkl1m.chat.benchmark;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает стоимость рассылки одного события в комнату разного размера:
+ * сериализацию на каждого подписчика (прежняя схема) и один общий фрейм на канал.
+ * Аллокации на одну рассылку видны в выводе профилировщика {@code -prof gc}
+ * (метрика gc.alloc.rate.norm).
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastEncodingBenchmark {
+
+    @Param({"1", "100", "1000", "5000"})
+    private int roomSize;
+
+    private JsonUtils jsonUtils;
+
+    private NettyDataBufferFactory bufferFactory;
+
+    private Event event;
+
+    @Setup
+    public void setUp() {
+        jsonUtils = new JsonUtils(new ObjectMapper());
+        bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+        event = Event.builder()
+                .id("6751c1f2a3b4c5d6e7f80912")
+                .channelId("benchmark-channel")
+                .type(Type.CHAT_MESSAGE)
+                .message("Hello everyone, this is a typical chat message of moderate length.")
+                .nickname("benchmark-user")
+                .build();
+    }
+
+    @Benchmark
+    public void encodePerSubscriber(Blackhole blackhole) {
+        for (int i = 0; i < roomSize; i++) {
+            String json = jsonUtils.toJSON(event);
+            DataBuffer payload = bufferFactory.wrap(json.getBytes(StandardCharsets.UTF_8));
+            blackhole.consume(new WebSocketMessage(WebSocketMessage.Type.TEXT, payload));
+            DataBufferUtils.release(payload);
+        }
+    }
+
+    @Benchmark
+    public void encodeOncePerChannel(Blackhole blackhole) {
+        EventFrame frame = new EventFrame(event, jsonUtils.toJSONBytes(event));
+        for (int i = 0; i < roomSize; i++) {
+            WebSocketMessage message = frame.toMessage(bufferFactory);
+            blackhole.consume(message);
+            DataBufferUtils.release(message.getPayload());
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.alkl1m.chat.benchmark;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет кодирование и декодирование события через {@link JsonUtils}
+ * для сообщений разной длины: в строку, в байты UTF-8 и обратно из строки.
+ * Декодирование входящего фрейма сравнивается в двух вариантах: прежнем, через копию
+ * байтов фрейма в строку, и прямом разборе буфера. Буфер фрейма, как и в Netty, лежит
+ * в прямой памяти пула. Аллокации на операцию показывает профилировщик gc.
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int messageLength;
+
+    private JsonUtils jsonUtils;
+
+    private Event event;
+
+    private String json;
+
+    private DataBuffer frame;
+
+    @Setup
+    public void setUp() {
+        jsonUtils = new JsonUtils(new ObjectMapper());
+        event = Event.builder()
+                .id("6751c1f2a3b4c5d6e7f80912")
+                .channelId("benchmark-channel")
+                .type(Type.CHAT_MESSAGE)
+                .message("m".repeat(messageLength))
+                .nickname("benchmark-user")
+                .build();
+        json = jsonUtils.toJSON(event);
+        frame = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT).allocateBuffer(json.length());
+        frame.write(jsonUtils.toJSONBytes(event));
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBufferUtils.release(frame);
+    }
+
+    @Benchmark
+    public String encodeToString() {
+        return jsonUtils.toJSON(event);
+    }
+
+    @Benchmark
+    public byte[] encodeToBytes() {
+        return jsonUtils.toJSONBytes(event);
+    }
+
+    @Benchmark
+    public Event decode() {
+        return jsonUtils.toObject(json, Event.class);
+    }
+
+    @Benchmark
+    public Event decodeFrameAsText() {
+        frame.readPosition(0);
+        return jsonUtils.toObject(frame.toString(StandardCharsets.UTF_8), Event.class);
+    }
+
+    @Benchmark
+    public Event decodeFrame() {
+        frame.readPosition(0);
+        return jsonUtils.toObject(frame, Event.class);
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.alkl1m.chat.benchmark;
+
+import com.alkl1m.chat.channel.ChannelRegistry;
+import com.alkl1m.chat.config.ChannelProperties;
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.config.HistoryProperties;
+import com.alkl1m.chat.config.PersistenceProperties;
+import com.alkl1m.chat.config.SessionProperties;
+import com.alkl1m.chat.config.UploadProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.repository.EventBatchWriter;
+import com.alkl1m.chat.service.impl.ChatServiceImpl;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет {@link ChatServiceImpl#processEvent} с рассылкой события N подписчикам канала.
+ * Каждый подписчик, как WebSocket-сессия, получает сообщение поверх общего фрейма
+ * и освобождает его. Пакетная запись в MongoDB заменена пустой заглушкой,
+ * поэтому измеряется только путь события в памяти.
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessEventBenchmark {
+
+    private static final String CHANNEL_ID = "benchmark-channel";
+
+    @Param({"1", "100", "1000"})
+    private int subscribers;
+
+    private ChannelRegistry channelRegistry;
+
+    private ChatServiceImpl chatService;
+
+    private Disposable.Composite subscriptions;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        channelRegistry = new ChannelRegistry(new JsonUtils(new ObjectMapper()), new ChannelProperties(), new ClusterProperties(), meterRegistry);
+        channelRegistry.start();
+        EventBatchWriter eventBatchWriter = new EventBatchWriter(null, new PersistenceProperties(), meterRegistry) {
+            @Override
+            public boolean write(Event event) {
+                return true;
+            }
+        };
+        chatService = new ChatServiceImpl(null, eventBatchWriter, null, null, null, channelRegistry, null, null,
+                new HistoryProperties(), new UploadProperties(), new ClusterProperties(), new SessionProperties(), meterRegistry);
+        chatService.start();
+
+        NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+        subscriptions = Disposables.composite();
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(channelRegistry.subscribe(CHANNEL_ID)
+                    .subscribe(frame -> {
+                        WebSocketMessage message = frame.toMessage(bufferFactory);
+                        DataBufferUtils.release(message.getPayload());
+                    }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.dispose();
+        channelRegistry.stop();
+    }
+
+    @Benchmark
+    public void processEvent() {
+        Event event = Event.builder()
+                .type(Type.CHAT_MESSAGE)
+                .message("Hello everyone, this is a typical chat message of moderate length.")
+                .nickname("benchmark-user")
+                .build();
+        chatService.processEvent(event, CHANNEL_ID);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.alkl1m.chat.benchmark;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.CompactEventCodec;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает JSON и компактный CBOR-формат событий WebSocket: время кодирования
+ * и декодирования одного события и размер полезной нагрузки. Размер выводится
+ * вспомогательным счетчиком payloadBytes рядом с результатами кодирования.
+ * JSON, как и в обработчике сессии, декодируется прямо из буфера с байтами фрейма.
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireProtocolBenchmark {
+
+    private JsonUtils jsonUtils;
+
+    private CompactEventCodec compactEventCodec;
+
+    private Event event;
+
+    private byte[] json;
+
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() {
+        jsonUtils = new JsonUtils(new ObjectMapper());
+        compactEventCodec = new CompactEventCodec();
+        event = Event.builder()
+                .id("6751c1f2a3b4c5d6e7f80912")
+                .channelId("benchmark-channel")
+                .type(Type.CHAT_MESSAGE)
+                .message("Hello everyone, this is a typical chat message of moderate length.")
+                .nickname("benchmark-user")
+                .build();
+        json = jsonUtils.toJSONBytes(event);
+        cbor = compactEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public byte[] encodeJson(PayloadSize size) {
+        byte[] payload = jsonUtils.toJSONBytes(event);
+        size.payloadBytes = payload.length;
+        return payload;
+    }
+
+    @Benchmark
+    public byte[] encodeCbor(PayloadSize size) {
+        byte[] payload = compactEventCodec.encode(event);
+        size.payloadBytes = payload.length;
+        return payload;
+    }
+
+    @Benchmark
+    public Event decodeJson() {
+        return jsonUtils.toObject(DefaultDataBufferFactory.sharedInstance.wrap(json), Event.class);
+    }
+
+    @Benchmark
+    public Event decodeCbor() {
+        return compactEventCodec.decode(cbor);
+    }
+
+    /**
+     * Размер закодированного события в байтах, выводится JMH как вспомогательная метрика.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PayloadSize {
+
+        public long payloadBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            payloadBytes = 0;
+        }
+
+    }
+
+}
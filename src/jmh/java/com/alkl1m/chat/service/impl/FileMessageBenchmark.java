@@ -0,0 +1,79 @@
+package com.alkl1m.chat.service.impl;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет обработку файла, присланного через WebSocket в Base64: разбор JSON события
+ * с данными файла, декодирование Base64 и упаковку байтов в буфер перед записью в GridFS.
+ * Лежит в пакете сервиса, потому что вспомогательные методы доступны только внутри пакета.
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileMessageBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int fileSize;
+
+    private JsonUtils jsonUtils;
+
+    private String base64;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        jsonUtils = new JsonUtils(new ObjectMapper());
+        byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        base64 = Base64.getEncoder().encodeToString(content);
+        json = jsonUtils.toJSON(Event.builder()
+                .channelId("benchmark-channel")
+                .type(Type.FILE_MESSAGE)
+                .nickname("benchmark-user")
+                .filename("file.bin")
+                .fileData(base64)
+                .build());
+    }
+
+    @Benchmark
+    public Event decodeEvent() {
+        return jsonUtils.toObject(json, Event.class);
+    }
+
+    @Benchmark
+    public byte[] decodeBase64() {
+        return ChatServiceImpl.decodeBase64FileData(base64);
+    }
+
+    @Benchmark
+    public DataBuffer decodeAndWrap() {
+        Event event = jsonUtils.toObject(json, Event.class);
+        return ChatServiceImpl.wrapFileBytesToDataBuffer(ChatServiceImpl.decodeBase64FileData(event.getFileData())).blockFirst();
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.alkl1m.chat.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет разбор идентификатора канала из строки запроса рукопожатия
+ * {@link ChatSocketHandler#extractChannelId(String)}. Лежит в пакете обработчика,
+ * потому что метод разбора доступен только внутри пакета.
+ *
+ * @author AlKl1M
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelIdExtractionBenchmark {
+
+    @Param({
+            "channelId=benchmark-channel",
+            "channelId=benchmark-channel&lastEventId=6751c1f2a3b4c5d6e7f80912",
+            "lastEventId=6751c1f2a3b4c5d6e7f80912&channelId=benchmark-channel"
+    })
+    private String query;
+
+    @Benchmark
+    public String extractChannelId() {
+        return ChatSocketHandler.extractChannelId(query);
+    }
+
+}
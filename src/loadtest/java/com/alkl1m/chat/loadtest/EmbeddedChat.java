@@ -0,0 +1,59 @@
+package com.alkl1m.chat.loadtest;
+
+import com.alkl1m.chat.ChatApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.net.URI;
+
+/**
+ * Приложение чата, запущенное в процессе нагрузочного теста с MongoDB в Testcontainers.
+ * Используется, когда адрес внешнего сервера не указан.
+ *
+ * @author AlKl1M
+ */
+final class EmbeddedChat implements AutoCloseable {
+
+    private final MongoDBContainer mongoDBContainer;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedChat(MongoDBContainer mongoDBContainer, ConfigurableApplicationContext context) {
+        this.mongoDBContainer = mongoDBContainer;
+        this.context = context;
+    }
+
+    /**
+     * Запускает контейнер MongoDB и приложение на случайном порту с профилем dev.
+     *
+     * @return запущенное приложение.
+     */
+    static EmbeddedChat start() {
+        MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:latest");
+        mongoDBContainer.start();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChatApplication.class)
+                .profiles("dev")
+                .properties(
+                        "server.port=0",
+                        "spring.data.mongodb.uri=" + mongoDBContainer.getReplicaSetUrl(),
+                        "spring.data.mongodb.database=loadtest")
+                .run();
+        return new EmbeddedChat(mongoDBContainer, context);
+    }
+
+    /**
+     * Возвращает адрес WebSocket-обработчика запущенного приложения.
+     *
+     * @return адрес без параметров запроса.
+     */
+    URI url() {
+        return URI.create("ws://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/ws");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        mongoDBContainer.stop();
+    }
+
+}
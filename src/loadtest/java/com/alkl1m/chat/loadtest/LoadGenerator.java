@@ -0,0 +1,214 @@
+package com.alkl1m.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Генератор нагрузки на WebSocket-обработчик чата. Открывает заданное число сессий,
+ * распределенных по каналам, и отправляет из каждой сообщения с заданной частотой.
+ * В текст сообщения записывается момент отправки по {@link System#nanoTime()}, поэтому
+ * задержка от отправки до получения измеряется каждой сессией канала, получившей сообщение.
+ * Отправители и получатели находятся в одном процессе, и часы у них общие.
+ * <p>
+ * Запуск: {@code ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="--sessions=2000 --channels=20"}.
+ * Без параметра {@code --url} приложение запускается в этом же процессе с MongoDB в Testcontainers.
+ *
+ * @author AlKl1M
+ */
+public final class LoadGenerator {
+
+    private static final char STAMP_SEPARATOR = '|';
+
+    private final LoadTestOptions options;
+    private final URI url;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ReactorNettyWebSocketClient client =
+            new ReactorNettyWebSocketClient(HttpClient.create(ConnectionProvider.newConnection()));
+    private final Sinks.Empty<Void> stop = Sinks.empty();
+    private final Disposable.Composite sessions = Disposables.composite();
+    private final Recorder latency = new Recorder(TimeUnit.MINUTES.toNanos(1), 3);
+    private final String padding;
+
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder connectErrors = new LongAdder();
+    private final LongAdder sessionErrors = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    private LoadGenerator(LoadTestOptions options, URI url) {
+        this.options = options;
+        this.url = url;
+        this.padding = "x".repeat(options.messageSize());
+    }
+
+    /**
+     * Запускает нагрузочный тест и выводит отчет в стандартный вывод.
+     *
+     * @param args параметры теста вида {@code --name=value}, см. {@link LoadTestOptions}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        LoggingSystem.get(LoadGenerator.class.getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+        if (options.url() != null) {
+            new LoadGenerator(options, options.url()).run().print(System.out);
+        } else {
+            try (EmbeddedChat chat = EmbeddedChat.start()) {
+                new LoadGenerator(options, chat.url()).run().print(System.out);
+            }
+        }
+        System.exit(0);
+    }
+
+    private Report run() throws InterruptedException {
+        log("Opening %d sessions across %d channels at %s", options.sessions(), options.channels(), url);
+        long connectStart = System.nanoTime();
+        Flux.range(0, options.sessions())
+                .flatMap(this::open, options.connectConcurrency())
+                .blockLast();
+        log("Connected %d sessions in %d ms, %d failed", connected.sum(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart), connectErrors.sum());
+
+        log("Warming up for %s", options.warmup());
+        Thread.sleep(options.warmup().toMillis());
+
+        latency.reset();
+        sent.reset();
+        delivered.reset();
+        decodeErrors.reset();
+        sessionErrors.reset();
+        log("Measuring for %s", options.duration());
+        long measureStart = System.nanoTime();
+        Thread.sleep(options.duration().toMillis());
+        Histogram histogram = latency.getIntervalHistogram();
+        Report report = new Report(options, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - measureStart),
+                connected.sum(), connectErrors.sum(), sessionErrors.sum(), decodeErrors.sum(),
+                sent.sum(), delivered.sum(), histogram);
+
+        stop.tryEmitEmpty();
+        sessions.dispose();
+        return report;
+    }
+
+    /**
+     * Открывает одну сессию. Возвращаемый Mono завершается, как только рукопожатие
+     * выполнено или не удалось, а сама сессия продолжает работать до конца теста.
+     */
+    private Mono<Void> open(int index) {
+        URI sessionUrl = UriComponentsBuilder.fromUri(url)
+                .queryParam("channelId", "load-" + (index % options.channels()))
+                .build()
+                .toUri();
+        Sinks.Empty<Void> handshake = Sinks.empty();
+
+        sessions.add(client.execute(sessionUrl, session -> {
+                    connected.increment();
+                    handshake.tryEmitEmpty();
+                    return exchange(session, "load-user-" + index);
+                })
+                .subscribe(null, error -> {
+                    if (handshake.tryEmitError(error).isSuccess()) {
+                        connectErrors.increment();
+                    } else {
+                        sessionErrors.increment();
+                    }
+                }));
+
+        return handshake.asMono().onErrorResume(error -> Mono.empty());
+    }
+
+    private Mono<Void> exchange(WebSocketSession session, String nickname) {
+        Duration interval = options.sendInterval();
+        Duration initialDelay = Duration.ofNanos(ThreadLocalRandom.current().nextLong(interval.toNanos()));
+
+        Flux<WebSocketMessage> outbound = Flux.interval(initialDelay, interval)
+                .onBackpressureDrop()
+                .map(tick -> session.textMessage(newMessage(nickname)))
+                .doOnNext(message -> sent.increment())
+                .takeUntilOther(stop.asMono());
+
+        Mono<Void> inbound = session.receive()
+                .doOnNext(message -> recordDelivery(message.getPayloadAsText()))
+                .takeUntilOther(stop.asMono())
+                .then();
+
+        return session.send(outbound).and(inbound);
+    }
+
+    private String newMessage(String nickname) {
+        return "{\"type\":\"CHAT_MESSAGE\",\"nickname\":\"" + nickname + "\",\"message\":\""
+                + System.nanoTime() + STAMP_SEPARATOR + padding + "\"}";
+    }
+
+    private void recordDelivery(String json) {
+        long receivedNanos = System.nanoTime();
+        try {
+            JsonNode event = mapper.readTree(json);
+            String message = event.path("message").asText();
+            int separator = message.indexOf(STAMP_SEPARATOR);
+            if (separator < 0) {
+                return;
+            }
+            latency.recordValue(Math.max(0, receivedNanos - Long.parseLong(message, 0, separator, 10)));
+            delivered.increment();
+        } catch (Exception e) {
+            decodeErrors.increment();
+        }
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.printf(Locale.ROOT, "[loadtest] " + format + "%n", args);
+    }
+
+    /**
+     * Итоги периода измерения.
+     */
+    private record Report(LoadTestOptions options, long elapsedMillis,
+                          long connected, long connectErrors, long sessionErrors, long decodeErrors,
+                          long sent, long delivered, Histogram latency) {
+
+        private void print(PrintStream out) {
+            double seconds = elapsedMillis / 1000.0;
+            double fanOut = (double) connected / options.channels();
+            out.printf(Locale.ROOT, "%nSessions:   %d connected of %d, %d channels (~%.0f sessions per channel)%n",
+                    connected, options.sessions(), options.channels(), fanOut);
+            out.printf(Locale.ROOT, "Sent:       %d messages, %.1f msg/s%n", sent, sent / seconds);
+            out.printf(Locale.ROOT, "Delivered:  %d messages, %.1f msg/s (%.1f%% of ~%.0f expected)%n",
+                    delivered, delivered / seconds, sent > 0 ? 100.0 * delivered / (sent * fanOut) : 0.0, sent * fanOut);
+            out.printf(Locale.ROOT, "Latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n",
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+            out.printf(Locale.ROOT, "Errors:     %d connect, %d session, %d decode%n",
+                    connectErrors, sessionErrors, decodeErrors);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+
+    }
+
+}
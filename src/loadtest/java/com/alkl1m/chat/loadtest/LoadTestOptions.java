@@ -0,0 +1,81 @@
+package com.alkl1m.chat.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста, передаваемые аргументами вида {@code --name=value}.
+ *
+ * @param url                адрес WebSocket-обработчика или null, чтобы запустить приложение
+ *                           в этом же процессе с MongoDB в Testcontainers.
+ * @param sessions           число WebSocket-сессий.
+ * @param channels           число каналов, между которыми поровну распределяются сессии.
+ * @param rate               число сообщений в секунду от одной сессии.
+ * @param messageSize        длина текста сообщения в символах.
+ * @param connectConcurrency максимальное число одновременно устанавливаемых соединений.
+ * @param warmup             время прогрева, результаты которого не учитываются.
+ * @param duration           время измерения.
+ * @author AlKl1M
+ */
+record LoadTestOptions(URI url,
+                       int sessions,
+                       int channels,
+                       double rate,
+                       int messageSize,
+                       int connectConcurrency,
+                       Duration warmup,
+                       Duration duration) {
+
+    /**
+     * Разбирает аргументы командной строки. Неуказанные параметры принимают значения по умолчанию.
+     *
+     * @param args аргументы вида {@code --sessions=2000}.
+     * @return параметры теста.
+     * @throws IllegalArgumentException если аргумент не распознан или имеет неверный формат.
+     */
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                values.containsKey("url") ? URI.create(values.remove("url")) : null,
+                Integer.parseInt(values.getOrDefault("sessions", "1000")),
+                Integer.parseInt(values.getOrDefault("channels", "10")),
+                Double.parseDouble(values.getOrDefault("rate", "1")),
+                Integer.parseInt(values.getOrDefault("message-size", "64")),
+                Integer.parseInt(values.getOrDefault("connect-concurrency", "200")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "30s")));
+
+        values.keySet().removeAll(List.of("sessions", "channels", "rate", "message-size",
+                "connect-concurrency", "warmup", "duration"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (options.sessions <= 0 || options.channels <= 0 || options.rate <= 0) {
+            throw new IllegalArgumentException("sessions, channels and rate must be positive");
+        }
+        return options;
+    }
+
+    /**
+     * Возвращает интервал между сообщениями одной сессии.
+     *
+     * @return интервал отправки.
+     */
+    Duration sendInterval() {
+        return Duration.ofNanos((long) (1_000_000_000L / rate));
+    }
+
+}
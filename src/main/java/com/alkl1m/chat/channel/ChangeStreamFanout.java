@@ -0,0 +1,190 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.entity.Event;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Доставка событий между экземплярами приложения через поток изменений MongoDB.
+ * Каждый экземпляр читает вставки в коллекцию событий только для каналов, которые есть
+ * в его реестре, и без событий, принятых им самим и уже разосланных локально: фильтр
+ * применяется на сервере MongoDB, поэтому экземпляр не получает события чужих каналов.
+ * При изменении состава каналов поток открывается заново с новым фильтром, но не чаще
+ * раза в {@link ClusterProperties#getReopenInterval()}, так что смена многих каналов
+ * объединяется в одно переоткрытие. Новый поток, как и поток после ошибки, продолжается
+ * с токена последнего полученного события, поэтому события не теряются и не дублируются.
+ * Как и локальные события, полученные события отправляются в канал из потока его шарда.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "chat.cluster", name = "enabled", havingValue = "true")
+public class ChangeStreamFanout {
+
+    private static final String EVENTS_COLLECTION = "events";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ChannelRegistry channelRegistry;
+    private final ShardedDispatcher eventDispatcher;
+    private final ClusterProperties clusterProperties;
+    private final MeterRegistry meterRegistry;
+
+    private volatile BsonValue resumeToken;
+    private volatile Set<String> tailedChannels = Set.of();
+    private Counter received;
+    private Counter dropped;
+    private Counter restarts;
+    private Counter errors;
+    private Disposable subscription;
+
+    /**
+     * Регистрирует метрики и начинает отслеживать состав локальных каналов.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("chat.cluster.channels", this, fanout -> fanout.tailedChannels.size())
+                .description("Number of channels included in the change stream filter")
+                .register(meterRegistry);
+        received = Counter.builder("chat.cluster.received")
+                .description("Events received from the change stream and emitted to local channels")
+                .register(meterRegistry);
+        dropped = Counter.builder("chat.cluster.dropped")
+                .description("Events received from the change stream and dropped because the shard queue was full")
+                .register(meterRegistry);
+        restarts = Counter.builder("chat.cluster.restarts")
+                .description("Number of times the change stream was opened for a new channel set or after a failure")
+                .register(meterRegistry);
+        errors = Counter.builder("chat.cluster.errors")
+                .description("Number of change stream failures")
+                .register(meterRegistry);
+
+        subscription = channelRegistry.channelIdUpdates(clusterProperties.getReopenInterval())
+                .switchMap(this::tail, 1)
+                .subscribe();
+    }
+
+    /**
+     * Закрывает поток изменений.
+     */
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Возвращает каналы, включенные в фильтр текущего потока изменений.
+     *
+     * @return снимок идентификаторов каналов.
+     */
+    public Set<String> tailedChannels() {
+        return tailedChannels;
+    }
+
+    /**
+     * Открывает поток изменений для указанных каналов и передает полученные события в локальные каналы.
+     * После ошибки или завершения поток открывается заново с токена последнего события.
+     *
+     * @param channelIds идентификаторы локальных каналов.
+     * @return поток, завершающийся только при отмене.
+     */
+    private Flux<Void> tail(Set<String> channelIds) {
+        tailedChannels = channelIds;
+        if (channelIds.isEmpty()) {
+            return Flux.never();
+        }
+        return Flux.defer(() -> {
+                    restarts.increment();
+                    return mongoTemplate.changeStream(EVENTS_COLLECTION, options(channelIds), Event.class);
+                })
+                .doOnNext(this::deliver)
+                .doOnError(this::onError)
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, clusterProperties.getRetryBackoff()))
+                .repeatWhen(completions -> completions.delayElements(clusterProperties.getRetryBackoff()))
+                .thenMany(Flux.empty());
+    }
+
+    private ChangeStreamOptions options(Set<String> channelIds) {
+        Document match = new Document("$match", new Document()
+                .append("operationType", new Document("$in", List.of(
+                        OperationType.INSERT.getValue(),
+                        OperationType.REPLACE.getValue())))
+                .append("fullDocument.channelId", new Document("$in", List.copyOf(channelIds)))
+                .append("fullDocument.origin", new Document("$ne", clusterProperties.getNodeId())));
+
+        ChangeStreamOptions.ChangeStreamOptionsBuilder builder = ChangeStreamOptions.builder().filter(match);
+        BsonValue token = resumeToken;
+        // Пока не получено ни одного события, дубликаты невозможны, поэтому поток
+        // открывается с запасом по времени, покрывающим расхождение часов и момент появления канала
+        return token != null
+                ? builder.resumeAfter(token).build()
+                : builder.resumeAt(Instant.now().minus(clusterProperties.getStartSlack())).build();
+    }
+
+    private void deliver(ChangeStreamEvent<Event> change) {
+        if (change.getOperationType() == OperationType.INVALIDATE) {
+            // После удаления или переименования коллекции продолжить поток с этого токена нельзя
+            resumeToken = null;
+            return;
+        }
+        resumeToken = change.getResumeToken();
+        Event event = change.getBody();
+        if (event == null) {
+            return;
+        }
+        received.increment();
+        boolean dispatched = eventDispatcher.dispatch(event.getChannelId(), () -> channelRegistry.find(event.getChannelId())
+                .ifPresent(channel -> channel.emit(event)));
+        if (!dispatched) {
+            dropped.increment();
+            log.warn("Dropped remote event {} for channel {}: shard queue is full", event.getId(), event.getChannelId());
+        }
+    }
+
+    private void onError(Throwable error) {
+        errors.increment();
+        if (isHistoryLost(error)) {
+            log.warn("Change stream resume point is no longer in the oplog, restarting from now");
+            resumeToken = null;
+        } else {
+            log.error("Change stream failed: {}", error.getMessage());
+        }
+    }
+
+    private static boolean isHistoryLost(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoCommandException commandException
+                    && commandException.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Канал чата: Sink событий, общий поток закодированных фреймов и счетчик подписчиков,
+ * по которому {@link ChannelRegistry} определяет, можно ли освободить канал.
+ * События канала отправляются только из потока его шарда {@link ShardedDispatcher},
+ * поэтому Sink никогда не получает конкурентных вызовов.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+public final class Channel {
+
+    @Getter
+    private final String id;
+
+    @Getter
+    private final Sinks.Many<Event> sink;
+
+    @Getter
+    private final Flux<EventFrame> frames;
+
+    private final ChannelEmission emission;
+
+    private final RecentEvents recentEvents;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final AtomicLong encodedFrames = new AtomicLong();
+
+    private final AtomicLong encodedBytes = new AtomicLong();
+
+    private volatile long lastActivityNanos;
+
+    /**
+     * Создает канал. Sink не отменяется при уходе последнего подписчика,
+     * чтобы общий поток фреймов мог переподключиться к нему при следующей сессии.
+     *
+     * @param id           идентификатор канала.
+     * @param encoder      функция сериализации события во фрейм.
+     * @param emission     политика повторных попыток отправки.
+     * @param recentEvents буфер последних событий канала.
+     */
+    Channel(String id, Function<Event, EventFrame> encoder, ChannelEmission emission, RecentEvents recentEvents) {
+        this.id = id;
+        this.emission = emission;
+        this.recentEvents = recentEvents;
+        this.sink = Sinks.many().multicast().onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false);
+        this.frames = sink.asFlux()
+                .map(encoder)
+                .doOnNext(this::recordFrame)
+                .share();
+        touch();
+    }
+
+    /**
+     * Отправляет событие подписчикам канала. Метод вызывается только из потока шарда канала.
+     * Каждое событие, кроме изменений состава канала, также попадает в буфер последних событий канала.
+     *
+     * @param event событие для отправки.
+     */
+    public void emit(Event event) {
+        if (event.getType() != Type.PRESENCE) {
+            recentEvents.add(event);
+        }
+        emitWithRetry(event);
+    }
+
+    /**
+     * Возвращает текущее число подписчиков канала.
+     *
+     * @return число подписчиков.
+     */
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    /**
+     * Регистрирует нового подписчика и обновляет время последней активности.
+     */
+    void acquire() {
+        subscribers.incrementAndGet();
+        touch();
+    }
+
+    /**
+     * Снимает подписчика и обновляет время последней активности.
+     */
+    void release() {
+        subscribers.decrementAndGet();
+        touch();
+    }
+
+    /**
+     * Обновляет время последней активности канала.
+     */
+    void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * Проверяет, что у канала нет подписчиков и он не использовался с указанного момента.
+     *
+     * @param deadlineNanos момент времени по {@link System#nanoTime()}.
+     * @return true, если канал можно освободить.
+     */
+    boolean isIdleSince(long deadlineNanos) {
+        return subscribers.get() == 0 && lastActivityNanos - deadlineNanos <= 0;
+    }
+
+    /**
+     * Возвращает буфер последних событий канала.
+     *
+     * @return буфер последних событий.
+     */
+    RecentEvents recentEvents() {
+        return recentEvents;
+    }
+
+    /**
+     * Завершает Sink канала, освобождая накопленный в нем буфер и буфер последних событий.
+     */
+    void close() {
+        sink.tryEmitComplete();
+        recentEvents.close();
+    }
+
+    /**
+     * Оценивает объем памяти, удерживаемый буфером канала: число событий, ожидающих
+     * доставки, умноженное на средний размер закодированного фрейма канала.
+     *
+     * @return оценка удерживаемых байтов.
+     */
+    long retainedBytes() {
+        long frameCount = encodedFrames.get();
+        Integer buffered = Scannable.from(sink).scan(Scannable.Attr.BUFFERED);
+        if (frameCount == 0 || buffered == null) {
+            return 0;
+        }
+        return buffered * (encodedBytes.get() / frameCount);
+    }
+
+    /**
+     * Отправляет событие в Sink, повторяя попытку по политике канала. Пока у канала нет
+     * подписчиков, событие в Sink не отправляется: иначе Sink накопил бы его и доставил
+     * следующему подписчику устаревшим. Пропущенные события клиент получает из буфера
+     * последних событий при подключении. События, отправленные в уже вытесненный канал,
+     * отбрасываются. Исключение подписчика не прерывает обработку остальных задач шарда.
+     *
+     * @param event событие для отправки.
+     */
+    private void emitWithRetry(Event event) {
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int attempt = 0;
+            Sinks.EmitResult result;
+            while ((result = sink.tryEmitNext(event)).isFailure()) {
+                if (!emission.shouldRetry(result, attempt++)) {
+                    emission.onDropped(result);
+                    return;
+                }
+            }
+            emission.onEmitted(System.nanoTime() - start, event.getReceivedNanos());
+        } catch (RuntimeException e) {
+            log.error("Error emitting event into channel {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void recordFrame(EventFrame frame) {
+        encodedFrames.incrementAndGet();
+        encodedBytes.addAndGet(frame.size());
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.ChannelProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Sinks;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общая для всех каналов политика повторных попыток отправки в Sink и счетчики отправки.
+ * Счетчики не размечаются идентификатором канала, чтобы число метрик не зависело от числа комнат.
+ *
+ * @author AlKl1M
+ */
+final class ChannelEmission {
+
+    private final int maxRetries;
+    private final Map<Sinks.EmitResult, Counter> dropped = new EnumMap<>(Sinks.EmitResult.class);
+    private final Counter retries;
+    private final Counter emitted;
+    private final Timer fanout;
+    private final Timer emittedLatency;
+
+    /**
+     * Создает политику отправки и регистрирует ее счетчики.
+     *
+     * @param emission      настройки повторных попыток.
+     * @param meterRegistry реестр метрик.
+     */
+    ChannelEmission(ChannelProperties.Emission emission, MeterRegistry meterRegistry) {
+        this.maxRetries = emission.getMaxRetries();
+        this.retries = Counter.builder("chat.emission.retries")
+                .description("Repeated attempts to emit an event into a channel sink")
+                .register(meterRegistry);
+        this.emitted = Counter.builder("chat.emission.emitted")
+                .description("Events emitted into a channel sink")
+                .register(meterRegistry);
+        this.fanout = Timer.builder("chat.emission.fanout")
+                .description("Time to deliver an event to all channel subscribers, including retries")
+                .register(meterRegistry);
+        this.emittedLatency = Timer.builder("chat.event.latency")
+                .description("Time from receiving an event to reaching a pipeline stage")
+                .tag("stage", "emitted")
+                .register(meterRegistry);
+        for (Sinks.EmitResult result : Sinks.EmitResult.values()) {
+            if (result.isFailure()) {
+                dropped.put(result, Counter.builder("chat.emission.dropped")
+                        .description("Events that could not be emitted into a channel sink")
+                        .tag("reason", result.name())
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * Фиксирует успешную отправку события. Sink доставляет событие подписчикам
+     * в вызывающем потоке, поэтому длительность отправки - это время рассылки по каналу.
+     * Для события, полученного этим узлом, также фиксируется время от получения до конца рассылки.
+     *
+     * @param elapsedNanos  длительность отправки вместе с повторными попытками.
+     * @param receivedNanos момент получения события по {@link System#nanoTime()} или 0.
+     */
+    void onEmitted(long elapsedNanos, long receivedNanos) {
+        emitted.increment();
+        fanout.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (receivedNanos != 0) {
+            emittedLatency.record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Решает, повторять ли отправку после неудачи. Повтор выполняется сразу, без паузы:
+     * поток шарда обслуживает и другие каналы, и блокировать его нельзя. Завершенный Sink,
+     * отмена и уход всех подписчиков не исправляются повтором.
+     *
+     * @param result  результат последней попытки.
+     * @param attempt номер уже выполненной попытки, начиная с нуля.
+     * @return true, если отправку следует повторить.
+     */
+    boolean shouldRetry(Sinks.EmitResult result, int attempt) {
+        if (result == Sinks.EmitResult.FAIL_TERMINATED
+                || result == Sinks.EmitResult.FAIL_CANCELLED
+                || result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER
+                || attempt >= maxRetries) {
+            return false;
+        }
+        retries.increment();
+        return true;
+    }
+
+    /**
+     * Фиксирует отброшенное событие с причиной, равной результату последней попытки.
+     *
+     * @param result результат последней попытки отправки.
+     */
+    void onDropped(Sinks.EmitResult result) {
+        dropped.get(result).increment();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.alkl1m.chat.channel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Присутствие пользователей в одном канале: число открытых сессий каждого пользователя
+ * и изменения состава, накопленные с последней рассылки. Пользователь считается участником,
+ * пока у него открыта хотя бы одна сессия, поэтому повторные вкладки и переподключения
+ * не меняют состав канала. Число участников читается без блокировки.
+ *
+ * @author AlKl1M
+ */
+final class ChannelPresence {
+
+    private final Map<String, Integer> sessions = new HashMap<>();
+
+    private final Set<String> joined = new LinkedHashSet<>();
+
+    private final Set<String> left = new LinkedHashSet<>();
+
+    private volatile int memberCount;
+
+    /**
+     * Учитывает открытую сессию пользователя.
+     *
+     * @param nickname имя пользователя.
+     * @return true, если вход погасил еще не разосланный выход того же пользователя.
+     */
+    synchronized boolean join(String nickname) {
+        if (sessions.merge(nickname, 1, Integer::sum) > 1) {
+            return false;
+        }
+        memberCount++;
+        if (left.remove(nickname)) {
+            return true;
+        }
+        joined.add(nickname);
+        return false;
+    }
+
+    /**
+     * Учитывает закрытую сессию пользователя.
+     *
+     * @param nickname имя пользователя.
+     * @return true, если выход погасил еще не разосланный вход того же пользователя.
+     */
+    synchronized boolean leave(String nickname) {
+        Integer count = sessions.get(nickname);
+        if (count == null) {
+            return false;
+        }
+        if (count > 1) {
+            sessions.put(nickname, count - 1);
+            return false;
+        }
+        sessions.remove(nickname);
+        memberCount--;
+        if (joined.remove(nickname)) {
+            return true;
+        }
+        left.add(nickname);
+        return false;
+    }
+
+    /**
+     * Возвращает число участников канала.
+     *
+     * @return число пользователей с открытыми сессиями.
+     */
+    int memberCount() {
+        return memberCount;
+    }
+
+    /**
+     * Возвращает имена участников канала.
+     *
+     * @return копия состава канала.
+     */
+    synchronized List<String> members() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    /**
+     * Забирает изменения, накопленные с последней рассылки.
+     *
+     * @return изменения состава или null, если состав не менялся.
+     */
+    synchronized Diff drainDiff() {
+        if (joined.isEmpty() && left.isEmpty()) {
+            return null;
+        }
+        Diff diff = new Diff(new ArrayList<>(joined), new ArrayList<>(left), memberCount);
+        joined.clear();
+        left.clear();
+        return diff;
+    }
+
+    /**
+     * Проверяет, что в канале нет участников и неразосланных изменений.
+     *
+     * @return true, если присутствие канала можно забыть.
+     */
+    synchronized boolean isEmpty() {
+        return sessions.isEmpty() && joined.isEmpty() && left.isEmpty();
+    }
+
+    /**
+     * Изменения состава канала за период рассылки.
+     *
+     * @param joined      пользователи, вошедшие в канал.
+     * @param left        пользователи, покинувшие канал.
+     * @param memberCount число участников после изменений.
+     */
+    record Diff(List<String> joined, List<String> left, int memberCount) {
+    }
+
+}
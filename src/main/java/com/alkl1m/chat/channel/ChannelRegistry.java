@@ -0,0 +1,276 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.ChannelProperties;
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.util.JsonUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Реестр каналов чата. Считает подписчиков каждого канала и периодически
+ * освобождает каналы, у которых нет подписчиков дольше заданного времени простоя,
+ * чтобы память не росла с числом когда-либо посещенных комнат. О появлении и освобождении
+ * каналов реестр сообщает подписчикам {@link #channelIdUpdates(Duration)}.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelRegistry {
+
+    private final JsonUtils jsonUtils;
+    private final ChannelProperties channelProperties;
+    private final ClusterProperties clusterProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Sinks.Many<Boolean> membershipChanges = Sinks.many().multicast().directBestEffort();
+
+    private Counter evictions;
+    private Counter historyHits;
+    private Counter historyMisses;
+    private ChannelEmission emission;
+    private RecentEvents.Budget recentBudget;
+    private Disposable sweeper;
+
+    /**
+     * Регистрирует метрики реестра и запускает периодическую проверку простаивающих каналов.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("chat.channels.live", channels, Map::size)
+                .description("Number of channels held in memory")
+                .register(meterRegistry);
+        Gauge.builder("chat.channels.retained", this, ChannelRegistry::retainedBytes)
+                .description("Estimated bytes buffered by channel sinks")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        evictions = Counter.builder("chat.channels.evictions")
+                .description("Number of idle channels released")
+                .register(meterRegistry);
+        emission = new ChannelEmission(channelProperties.getEmission(), meterRegistry);
+        recentBudget = new RecentEvents.Budget(channelProperties.getRecent().getMaxEvents());
+        Gauge.builder("chat.history.cache.events", recentBudget, RecentEvents.Budget::used)
+                .description("Number of events held in channel recent-history buffers")
+                .register(meterRegistry);
+        historyHits = Counter.builder("chat.history.cache.hits")
+                .description("History pages served from channel recent-history buffers")
+                .register(meterRegistry);
+        historyMisses = Counter.builder("chat.history.cache.misses")
+                .description("History pages that had to be read from MongoDB")
+                .register(meterRegistry);
+
+        sweeper = Flux.interval(channelProperties.getSweepInterval())
+                .subscribe(tick -> evictIdle());
+    }
+
+    /**
+     * Останавливает проверку простаивающих каналов.
+     */
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    /**
+     * Возвращает канал с указанным идентификатором, создавая его при необходимости.
+     * Канал, полученный этим методом без подписки, освобождается по истечении времени простоя.
+     *
+     * @param channelId идентификатор канала.
+     * @return канал.
+     */
+    public Channel getOrCreate(String channelId) {
+        return update(channelId, Channel::touch);
+    }
+
+    /**
+     * Возвращает канал, если он сейчас находится в реестре.
+     *
+     * @param channelId идентификатор канала.
+     * @return канал или пустой Optional, если канала нет.
+     */
+    public Optional<Channel> find(String channelId) {
+        return Optional.ofNullable(channels.get(channelId));
+    }
+
+    /**
+     * Подписывается на фреймы канала. Пока подписка активна, канал не может быть освобожден.
+     *
+     * @param channelId идентификатор канала.
+     * @return поток фреймов канала.
+     */
+    public Flux<EventFrame> subscribe(String channelId) {
+        return Flux.using(() -> acquire(channelId), Channel::getFrames, Channel::release);
+    }
+
+    /**
+     * Освобождает каналы, у которых нет подписчиков дольше времени простоя.
+     * Проверка повторяется внутри compute, поэтому не конкурирует с одновременной подпиской.
+     */
+    void evictIdle() {
+        long deadline = System.nanoTime() - channelProperties.getIdleTimeout().toNanos();
+        boolean[] evicted = new boolean[1];
+        channels.forEach((channelId, channel) -> {
+            if (channel.isIdleSince(deadline)) {
+                channels.computeIfPresent(channelId, (key, current) -> {
+                    if (!current.isIdleSince(deadline)) {
+                        return current;
+                    }
+                    evicted[0] = true;
+                    return evict(current);
+                });
+            }
+        });
+        if (evicted[0]) {
+            membershipChanged();
+        }
+    }
+
+    /**
+     * Возвращает поток снимков идентификаторов каналов реестра. Первый снимок выдается через
+     * интервал после подписки, следующие - не чаще раза в интервал и только после появления
+     * или освобождения каналов, поэтому частая смена каналов объединяется в одно обновление.
+     *
+     * @param interval минимальный интервал между снимками.
+     * @return поток неизменяемых снимков идентификаторов каналов.
+     */
+    public Flux<Set<String>> channelIdUpdates(Duration interval) {
+        return Flux.merge(Mono.just(Boolean.TRUE), membershipChanges.asFlux())
+                .sample(interval)
+                .map(signal -> channelIds())
+                .distinctUntilChanged();
+    }
+
+    /**
+     * Возвращает идентификаторы каналов, находящихся в реестре на момент вызова.
+     *
+     * @return неизменяемый снимок идентификаторов каналов.
+     */
+    public Set<String> channelIds() {
+        return Set.copyOf(channels.keySet());
+    }
+
+    /**
+     * Возвращает страницу истории из буфера последних событий канала, если буфер
+     * полностью покрывает запрошенный диапазон. В режиме кластера буферы диапазонов не покрывают,
+     * и страницы всегда читаются из MongoDB. Курсоры before и after взаимоисключающие.
+     *
+     * @param channelId идентификатор канала.
+     * @param before    идентификатор события, до которого нужны события, или null.
+     * @param after     идентификатор события, после которого нужны события, или null.
+     * @param limit     размер страницы.
+     * @return страница в хронологическом порядке или пустой Optional, если страницу нужно читать из MongoDB.
+     */
+    public Optional<List<Event>> recentPage(String channelId, String before, String after, int limit) {
+        Optional<List<Event>> page = find(channelId)
+                .map(Channel::recentEvents)
+                .map(recent -> after != null ? recent.after(after, limit) : recent.before(before, limit));
+        (page.isPresent() ? historyHits : historyMisses).increment();
+        return page;
+    }
+
+    /**
+     * Возвращает события из буфера последних событий канала, следующие за курсором,
+     * независимо от границы покрытия буфера. Позволяет дополнить историю из MongoDB событиями,
+     * которые еще не записаны.
+     *
+     * @param channelId идентификатор канала.
+     * @param after     идентификатор события, после которого нужны события.
+     * @param limit     максимальное число событий.
+     * @return события в хронологическом порядке или пустой список, если канала нет в реестре.
+     */
+    public List<Event> bufferedAfter(String channelId, String after, int limit) {
+        return find(channelId)
+                .map(channel -> channel.recentEvents().buffered(after, limit))
+                .orElse(List.of());
+    }
+
+    /**
+     * Кодирует событие во фрейм так же, как это делают каналы реестра.
+     *
+     * @param event событие.
+     * @return закодированный фрейм.
+     */
+    public EventFrame encodeFrame(Event event) {
+        return new EventFrame(event, jsonUtils.toJSONBytes(event));
+    }
+
+    /**
+     * Возвращает число каналов в реестре.
+     *
+     * @return число каналов.
+     */
+    public int size() {
+        return channels.size();
+    }
+
+    private Channel acquire(String channelId) {
+        return update(channelId, Channel::acquire);
+    }
+
+    /**
+     * Применяет действие к каналу внутри compute, создавая канал при необходимости.
+     * О созданном канале сообщается после того, как он попал в реестр.
+     */
+    private Channel update(String channelId, Consumer<Channel> action) {
+        boolean[] created = new boolean[1];
+        Channel channel = channels.compute(channelId, (key, current) -> {
+            if (current == null) {
+                current = createChannel(key);
+                created[0] = true;
+            }
+            action.accept(current);
+            return current;
+        });
+        if (created[0]) {
+            membershipChanged();
+        }
+        return channel;
+    }
+
+    private void membershipChanged() {
+        membershipChanges.emitNext(Boolean.TRUE, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+    }
+
+    private Channel evict(Channel channel) {
+        channel.close();
+        evictions.increment();
+        log.debug("Evicted idle channel: {}", channel.getId());
+        return null;
+    }
+
+    private Channel createChannel(String channelId) {
+        RecentEvents recentEvents = new RecentEvents(channelProperties.getRecent().getCapacity(), recentBudget,
+                !clusterProperties.isEnabled());
+        return new Channel(channelId, this::encodeFrame, emission, recentEvents);
+    }
+
+    private double retainedBytes() {
+        return channels.values().stream()
+                .mapToLong(Channel::retainedBytes)
+                .sum();
+    }
+
+}
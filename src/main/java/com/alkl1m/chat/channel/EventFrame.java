@@ -0,0 +1,156 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.entity.Event;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.util.function.Function;
+
+/**
+ * Событие канала, сериализованное в UTF-8 JSON один раз для всех подписчиков.
+ * Полезная нагрузка хранится в обычном массиве байтов, который не нужно освобождать:
+ * каждое сообщение получает собственную обертку над общим массивом со своим счетчиком ссылок,
+ * поэтому запись во фрейм освобождает только обертку, а сессии при рассылке не конкурируют
+ * за общий счетчик. Компактное бинарное представление кодируется
+ * при первом запросе от сессии с бинарным протоколом и тоже разделяется между сессиями.
+ * Буферы полезной нагрузки несут момент получения события сервером, поэтому обработчик
+ * конвейера Netty может замерить задержку записи фрейма, не зная, к какому событию он относится.
+ *
+ * @author AlKl1M
+ */
+@Getter
+public final class EventFrame {
+
+    private final Event event;
+
+    @Getter(AccessLevel.NONE)
+    private final byte[] payload;
+
+    private final long createdNanos;
+
+    @Getter(AccessLevel.NONE)
+    private volatile byte[] compactPayload;
+
+    /**
+     * Создает фрейм для события с уже закодированной полезной нагрузкой.
+     *
+     * @param event   исходное событие.
+     * @param payload JSON-представление события в UTF-8.
+     */
+    public EventFrame(Event event, byte[] payload) {
+        this(event, payload, System.nanoTime());
+    }
+
+    /**
+     * Создает фрейм, заменяющий ранее созданные фреймы, с сохранением момента создания самого старого из них.
+     *
+     * @param event        исходное событие.
+     * @param payload      JSON-представление события в UTF-8.
+     * @param createdNanos момент создания по {@link System#nanoTime()}.
+     */
+    public EventFrame(Event event, byte[] payload, long createdNanos) {
+        this.event = event;
+        this.payload = payload;
+        this.createdNanos = createdNanos;
+    }
+
+    /**
+     * Возвращает размер закодированной полезной нагрузки в байтах.
+     *
+     * @return размер полезной нагрузки.
+     */
+    public int size() {
+        return payload.length;
+    }
+
+    /**
+     * Создает буфер над JSON-представлением события с отметкой момента его получения.
+     * Буфер разделяет байты фрейма без копирования; его освобождение не затрагивает фрейм.
+     *
+     * @return новый буфер полезной нагрузки.
+     */
+    public ByteBuf payloadBuffer() {
+        return new StampedByteBuf(payload, event.getReceivedNanos());
+    }
+
+    /**
+     * Создает текстовое WebSocket-сообщение, разделяющее байты фрейма без копирования.
+     *
+     * @param bufferFactory фабрика буферов сессии, в которую будет записано сообщение.
+     * @return текстовое сообщение с полезной нагрузкой фрейма.
+     */
+    public WebSocketMessage toMessage(DataBufferFactory bufferFactory) {
+        return wrap(WebSocketMessage.Type.TEXT, payload, bufferFactory);
+    }
+
+    /**
+     * Создает бинарное WebSocket-сообщение с компактным представлением события.
+     * Представление кодируется один раз на фрейм, последующие сессии разделяют его байты.
+     *
+     * @param bufferFactory фабрика буферов сессии, в которую будет записано сообщение.
+     * @param encoder       функция компактного кодирования события.
+     * @return бинарное сообщение с компактным представлением события.
+     */
+    public WebSocketMessage toBinaryMessage(DataBufferFactory bufferFactory, Function<Event, byte[]> encoder) {
+        return wrap(WebSocketMessage.Type.BINARY, compactPayload(encoder), bufferFactory);
+    }
+
+    private byte[] compactPayload(Function<Event, byte[]> encoder) {
+        byte[] compact = compactPayload;
+        if (compact == null) {
+            synchronized (this) {
+                compact = compactPayload;
+                if (compact == null) {
+                    compact = encoder.apply(event);
+                    compactPayload = compact;
+                }
+            }
+        }
+        return compact;
+    }
+
+    /**
+     * Возвращает момент получения события, байты которого содержит буфер исходящего фрейма.
+     *
+     * @param content содержимое фрейма или производный от него буфер.
+     * @return момент получения по {@link System#nanoTime()} или 0, если буфер создан не фреймом
+     * или событие получено не этим узлом.
+     */
+    public static long receivedNanosOf(ByteBuf content) {
+        for (ByteBuf buffer = content; buffer != null; buffer = buffer.unwrap()) {
+            if (buffer instanceof StampedByteBuf stamped) {
+                return stamped.receivedNanos;
+            }
+        }
+        return 0;
+    }
+
+    private WebSocketMessage wrap(WebSocketMessage.Type type, byte[] bytes, DataBufferFactory bufferFactory) {
+        if (bufferFactory instanceof NettyDataBufferFactory nettyBufferFactory) {
+            return new WebSocketMessage(type, nettyBufferFactory.wrap(new StampedByteBuf(bytes, event.getReceivedNanos())));
+        }
+        return new WebSocketMessage(type, bufferFactory.wrap(bytes));
+    }
+
+    /**
+     * Буфер над массивом байтов события с отметкой момента его получения. Массив только читается,
+     * поэтому одни и те же байты могут оборачивать буферы нескольких сессий одновременно.
+     */
+    private static final class StampedByteBuf extends UnpooledHeapByteBuf {
+
+        private final long receivedNanos;
+
+        private StampedByteBuf(byte[] bytes, long receivedNanos) {
+            super(UnpooledByteBufAllocator.DEFAULT, bytes, bytes.length);
+            this.receivedNanos = receivedNanos;
+        }
+
+    }
+
+}
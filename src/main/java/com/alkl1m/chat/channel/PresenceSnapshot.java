@@ -0,0 +1,14 @@
+package com.alkl1m.chat.channel;
+
+import java.util.List;
+
+/**
+ * Состав канала на момент запроса.
+ *
+ * @param channelId   идентификатор канала.
+ * @param memberCount число пользователей с открытыми сессиями в канале.
+ * @param members     имена пользователей или null, если состав не запрашивался.
+ * @author AlKl1M
+ */
+public record PresenceSnapshot(String channelId, int memberCount, List<String> members) {
+}
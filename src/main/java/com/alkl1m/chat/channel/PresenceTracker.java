@@ -0,0 +1,167 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.PresenceProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Учет присутствия пользователей в каналах по открытым WebSocket-сессиям.
+ * Входы и выходы не рассылаются по одному: изменения состава канала накапливаются
+ * и раз в период рассылаются одним событием PRESENCE со списками вошедших и вышедших
+ * и актуальным числом участников. Вход и выход в пределах периода взаимно погашаются,
+ * поэтому волна переподключений не превращается в поток событий. События присутствия
+ * не сохраняются в MongoDB. Рассылка идет через шард канала в {@link ShardedDispatcher},
+ * поэтому события присутствия упорядочены с остальными событиями канала.
+ * <p>
+ * Состав учитывается в пределах одного экземпляра приложения. При {@code chat.cluster.enabled=true}
+ * события присутствия не передаются между экземплярами: число участников и списки вошедших
+ * и вышедших отражают только сессии, открытые на этом экземпляре.
+ *
+ * @author AlKl1M
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceTracker {
+
+    private final ChannelRegistry channelRegistry;
+    private final ShardedDispatcher eventDispatcher;
+    private final PresenceProperties presenceProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ChannelPresence> channels = new ConcurrentHashMap<>();
+
+    private Counter diffs;
+    private Counter coalesced;
+    private Disposable flusher;
+
+    /**
+     * Регистрирует метрики и запускает периодическую рассылку изменений состава каналов.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("chat.presence.channels", channels, Map::size)
+                .description("Channels with tracked presence")
+                .register(meterRegistry);
+        diffs = Counter.builder("chat.presence.diffs")
+                .description("Batched presence changes emitted into channels")
+                .register(meterRegistry);
+        coalesced = Counter.builder("chat.presence.coalesced")
+                .description("Joins and leaves cancelled out before being emitted")
+                .register(meterRegistry);
+
+        flusher = Flux.interval(presenceProperties.getFlushInterval())
+                .subscribe(tick -> flush());
+    }
+
+    /**
+     * Останавливает рассылку изменений.
+     */
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.dispose();
+        }
+    }
+
+    /**
+     * Учитывает открытие сессии пользователя в канале.
+     *
+     * @param channelId идентификатор канала.
+     * @param nickname  имя пользователя.
+     */
+    public void join(String channelId, String nickname) {
+        channels.compute(channelId, (key, presence) -> {
+            ChannelPresence current = presence != null ? presence : new ChannelPresence();
+            if (current.join(nickname)) {
+                coalesced.increment();
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Учитывает закрытие сессии пользователя в канале.
+     *
+     * @param channelId идентификатор канала.
+     * @param nickname  имя пользователя.
+     */
+    public void leave(String channelId, String nickname) {
+        channels.computeIfPresent(channelId, (key, presence) -> {
+            if (presence.leave(nickname)) {
+                coalesced.increment();
+            }
+            return presence.isEmpty() ? null : presence;
+        });
+    }
+
+    /**
+     * Возвращает число участников канала на этом экземпляре без обхода состава.
+     *
+     * @param channelId идентификатор канала.
+     * @return число пользователей с открытыми сессиями.
+     */
+    public int memberCount(String channelId) {
+        ChannelPresence presence = channels.get(channelId);
+        return presence != null ? presence.memberCount() : 0;
+    }
+
+    /**
+     * Возвращает состав канала на этом экземпляре.
+     *
+     * @param channelId      идентификатор канала.
+     * @param includeMembers нужно ли перечислять участников.
+     * @return число участников и, если запрошено, их имена.
+     */
+    public PresenceSnapshot snapshot(String channelId, boolean includeMembers) {
+        ChannelPresence presence = channels.get(channelId);
+        if (presence == null) {
+            return new PresenceSnapshot(channelId, 0, includeMembers ? List.of() : null);
+        }
+        return new PresenceSnapshot(channelId, presence.memberCount(), includeMembers ? presence.members() : null);
+    }
+
+    /**
+     * Передает накопленные изменения состава в шарды каналов и забывает каналы без участников.
+     * Если очередь шарда переполнена, изменение отбрасывается; актуальное число участников
+     * придет со следующим изменением.
+     */
+    void flush() {
+        channels.forEach((channelId, presence) -> {
+            ChannelPresence.Diff diff = presence.drainDiff();
+            if (diff != null) {
+                emit(channelId, diff);
+            }
+            channels.computeIfPresent(channelId, (key, current) -> current.isEmpty() ? null : current);
+        });
+    }
+
+    private void emit(String channelId, ChannelPresence.Diff diff) {
+        Event event = Event.builder()
+                .channelId(channelId)
+                .type(Type.PRESENCE)
+                .joined(diff.joined())
+                .left(diff.left())
+                .memberCount(diff.memberCount())
+                .build();
+        if (channelRegistry.find(channelId).isEmpty()) {
+            return;
+        }
+        eventDispatcher.dispatch(channelId, () -> channelRegistry.find(channelId).ifPresent(channel -> {
+            channel.emit(event);
+            diffs.increment();
+        }));
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.entity.Event;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Кольцевой буфер последних событий канала, упорядоченных по идентификатору.
+ * Буфер помнит нижнюю границу покрытия: все события канала с идентификатором больше
+ * этой границы гарантированно находятся в буфере. Страница истории отдается из буфера,
+ * только если целиком лежит в покрытом диапазоне, иначе ее нужно читать из MongoDB.
+ * Идентификаторы событий - ObjectId в шестнадцатеричной записи фиксированной длины,
+ * поэтому их строковый порядок совпадает с порядком создания.
+ * В режиме кластера события других экземпляров приходят в канал с задержкой записи и потока
+ * изменений, а при переполнении шарда не приходят вовсе, поэтому событие с меньшим идентификатором
+ * может появиться после более новых или пропасть. Такой буфер не заявляет покрытия
+ * и страницы истории не отдает: они всегда читаются из MongoDB.
+ *
+ * @author AlKl1M
+ */
+final class RecentEvents {
+
+    private final Event[] ring;
+    private final Budget budget;
+    private final boolean covering;
+
+    private int head;
+    private int size;
+    private String coveredAfter;
+    private boolean closed;
+
+    /**
+     * Создает пустой буфер, покрывающий события канала. Покрытие начинается с момента создания:
+     * более ранние события канала могли быть записаны в базу без участия этого буфера.
+     *
+     * @param capacity максимальное число событий в буфере.
+     * @param budget   общий для всех каналов лимит числа событий.
+     */
+    RecentEvents(int capacity, Budget budget) {
+        this(capacity, budget, true);
+    }
+
+    /**
+     * Создает пустой буфер.
+     *
+     * @param capacity максимальное число событий в буфере.
+     * @param budget   общий для всех каналов лимит числа событий.
+     * @param covering false, если события канала могут приходить не в порядке идентификаторов
+     *                 или теряться, и страницы истории нельзя отдавать из буфера.
+     */
+    RecentEvents(int capacity, Budget budget, boolean covering) {
+        this.ring = new Event[capacity];
+        this.budget = budget;
+        this.covering = covering;
+        this.coveredAfter = new ObjectId().toHexString();
+    }
+
+    /**
+     * Добавляет событие в буфер с сохранением порядка. Если буфер или общий лимит
+     * исчерпаны, вытесняется самое старое событие, и граница покрытия сдвигается.
+     * События старше границы покрытия не добавляются: между ними и буфером мог быть пропуск.
+     *
+     * @param event событие канала.
+     */
+    synchronized void add(Event event) {
+        String id = event.getId();
+        if (closed || ring.length == 0 || id == null || id.compareTo(coveredAfter) <= 0) {
+            return;
+        }
+
+        if (size == ring.length || !budget.tryReserve()) {
+            if (size == 0 || id.compareTo(idAt(0)) < 0) {
+                coveredAfter = id;
+                return;
+            }
+            coveredAfter = idAt(0);
+            ring[head] = null;
+            head = index(1);
+            size--;
+        }
+
+        int position = size;
+        while (position > 0 && idAt(position - 1).compareTo(id) > 0) {
+            ring[index(position)] = ring[index(position - 1)];
+            position--;
+        }
+        ring[index(position)] = event;
+        size++;
+    }
+
+    /**
+     * Возвращает последние события, предшествующие курсору, в хронологическом порядке.
+     *
+     * @param before идентификатор события, до которого нужны события, или null для последней страницы.
+     * @param limit  размер страницы.
+     * @return страница событий или null, если буфер не содержит полной страницы.
+     */
+    synchronized List<Event> before(String before, int limit) {
+        if (!covering) {
+            return null;
+        }
+        int end = before == null ? size : firstIndexAbove(before, false);
+        if (end < limit) {
+            return null;
+        }
+        return copy(end - limit, end);
+    }
+
+    /**
+     * Возвращает события, следующие за курсором, в хронологическом порядке.
+     *
+     * @param after идентификатор события, после которого нужны события.
+     * @param limit размер страницы.
+     * @return страница событий или null, если часть диапазона не покрыта буфером.
+     */
+    synchronized List<Event> after(String after, int limit) {
+        if (!covering || after.compareTo(coveredAfter) < 0) {
+            return null;
+        }
+        int start = firstIndexAbove(after, true);
+        return copy(start, Math.min(size, start + limit));
+    }
+
+    /**
+     * Возвращает события буфера, следующие за курсором, без проверки границы покрытия:
+     * часть более ранних событий может отсутствовать в буфере.
+     *
+     * @param after идентификатор события, после которого нужны события.
+     * @param limit максимальное число событий.
+     * @return события в хронологическом порядке.
+     */
+    synchronized List<Event> buffered(String after, int limit) {
+        int start = firstIndexAbove(after, true);
+        return copy(start, Math.min(size, start + limit));
+    }
+
+    /**
+     * Возвращает число событий в буфере.
+     *
+     * @return число событий.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Очищает буфер и возвращает занятые им места в общий лимит.
+     */
+    synchronized void close() {
+        closed = true;
+        budget.release(size);
+        for (int i = 0; i < size; i++) {
+            ring[index(i)] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Находит первую позицию, идентификатор в которой не меньше курсора,
+     * а при strict равном true - строго больше курсора.
+     */
+    private int firstIndexAbove(String cursor, boolean strict) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = idAt(middle).compareTo(cursor);
+            if (comparison < 0 || (strict && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private List<Event> copy(int from, int to) {
+        List<Event> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(ring[index(i)]);
+        }
+        return page;
+    }
+
+    private String idAt(int position) {
+        return ring[index(position)].getId();
+    }
+
+    private int index(int position) {
+        return (head + position) % ring.length;
+    }
+
+    /**
+     * Общий для всех буферов лимит числа хранимых событий.
+     */
+    static final class Budget {
+
+        private final int maxEvents;
+        private final AtomicInteger used = new AtomicInteger();
+
+        Budget(int maxEvents) {
+            this.maxEvents = maxEvents;
+        }
+
+        int used() {
+            return used.get();
+        }
+
+        private boolean tryReserve() {
+            int current;
+            do {
+                current = used.get();
+                if (current >= maxEvents) {
+                    return false;
+                }
+            } while (!used.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release(int count) {
+            used.addAndGet(-count);
+        }
+
+    }
+
+}
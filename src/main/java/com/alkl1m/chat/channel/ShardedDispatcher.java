@@ -0,0 +1,144 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.DispatchProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Распределяет обработку событий по шардам: канал по хешу идентификатора всегда
+ * попадает в один и тот же шард, а каждый шард выполняет свои задачи в единственном
+ * потоке. Поэтому события одной комнаты обрабатываются по порядку поступления
+ * на одном ядре без блокировок, а разные комнаты обрабатываются параллельно.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+public class ShardedDispatcher {
+
+    private final Scheduler scheduler;
+    private final Shard[] shards;
+    private final Counter rejected;
+
+    /**
+     * Создает шарды и регистрирует метрики глубины их очередей.
+     *
+     * @param properties    настройки шардирования.
+     * @param meterRegistry реестр метрик.
+     */
+    public ShardedDispatcher(DispatchProperties properties, MeterRegistry meterRegistry) {
+        int shardCount = properties.resolveShards();
+        this.scheduler = Schedulers.newParallel("chat-shard", shardCount, true);
+        this.shards = new Shard[shardCount];
+        this.rejected = Counter.builder("chat.dispatch.rejected")
+                .description("Tasks rejected because the shard queue was full")
+                .register(meterRegistry);
+
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i, properties.getQueueCapacity(), scheduler.createWorker());
+            Gauge.builder("chat.dispatch.queue.depth", shard.depth, AtomicInteger::get)
+                    .description("Tasks waiting in the shard queue")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+            shards[i] = shard;
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь шарда, которому принадлежит канал.
+     *
+     * @param channelId идентификатор канала.
+     * @param task      задача обработки события канала.
+     * @return false, если очередь шарда переполнена и задача отброшена.
+     */
+    public boolean dispatch(String channelId, Runnable task) {
+        if (shards[shardOf(channelId)].submit(task)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Возвращает номер шарда канала.
+     *
+     * @param channelId идентификатор канала.
+     * @return номер шарда.
+     */
+    public int shardOf(String channelId) {
+        int hash = channelId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Возвращает число шардов.
+     *
+     * @return число шардов.
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Останавливает потоки шардов.
+     */
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Шард: MPSC-очередь задач и один поток, который ее разбирает.
+     */
+    private static final class Shard {
+
+        private final int index;
+        private final int capacity;
+        private final Scheduler.Worker worker;
+        private final Queue<Runnable> queue = Queues.<Runnable>unboundedMultiproducer().get();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private Shard(int index, int capacity, Scheduler.Worker worker) {
+            this.index = index;
+            this.capacity = capacity;
+            this.worker = worker;
+        }
+
+        private boolean submit(Runnable task) {
+            if (depth.incrementAndGet() > capacity) {
+                depth.decrementAndGet();
+                return false;
+            }
+            queue.offer(task);
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                Runnable task;
+                while ((task = queue.poll()) != null) {
+                    depth.decrementAndGet();
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Error processing task in shard {}: {}", index, e.getMessage());
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+    }
+
+}
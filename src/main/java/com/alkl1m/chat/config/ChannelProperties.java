@@ -0,0 +1,72 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки жизненного цикла каналов чата.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.channel")
+public class ChannelProperties {
+
+    /**
+     * Время, после которого канал без подписчиков удаляется из реестра.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    /**
+     * Период проверки каналов на простой.
+     */
+    private Duration sweepInterval = Duration.ofSeconds(30);
+
+    /**
+     * Настройки отправки событий в Sink канала.
+     */
+    private Emission emission = new Emission();
+
+    /**
+     * Настройки буфера последних событий канала.
+     */
+    private Recent recent = new Recent();
+
+    /**
+     * Поведение при неудачной попытке отправить событие в Sink канала.
+     */
+    @Getter
+    @Setter
+    public static class Emission {
+
+        /**
+         * Число повторных попыток отправки перед тем, как событие будет отброшено.
+         */
+        private int maxRetries = 8;
+
+    }
+
+    /**
+     * Буфер последних событий, из которого отдаются свежие страницы истории без обращения к MongoDB.
+     */
+    @Getter
+    @Setter
+    public static class Recent {
+
+        /**
+         * Максимальное число событий в буфере одного канала. Нулевое значение отключает буфер.
+         */
+        private int capacity = 200;
+
+        /**
+         * Максимальное суммарное число событий в буферах всех каналов.
+         */
+        private int maxEvents = 100_000;
+
+    }
+
+}
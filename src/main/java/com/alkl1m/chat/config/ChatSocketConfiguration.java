@@ -1,19 +1,25 @@
 package com.alkl1m.chat.config;
 
-import com.alkl1m.chat.entity.Event;
-import com.alkl1m.chat.service.ChatService;
-import com.alkl1m.chat.util.JsonUtils;
+import com.alkl1m.chat.channel.ShardedDispatcher;
 import com.alkl1m.chat.websocket.ChatSocketHandler;
-import lombok.RequiredArgsConstructor;
+import com.alkl1m.chat.websocket.DeflateUpgradeStrategy;
+import com.alkl1m.chat.websocket.WriteLatencyHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.HandlerMapping;
 import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
 import org.springframework.web.reactive.socket.server.support.WebSocketHandlerAdapter;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.netty.NettyPipeline;
+import reactor.netty.http.server.WebsocketServerSpec;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Класс конфигурации сокетов для чата.
@@ -21,47 +27,31 @@ import java.util.Map;
  * @author AlKl1M
  */
 @Configuration
-@RequiredArgsConstructor
 public class ChatSocketConfiguration {
 
-    private final ChatService chatService;
-    private final JsonUtils jsonUtils;
-
-    /**
-     * Создает и возвращает экземпляр Sinks.Many для публикации событий.
-     * Используется для многократной рассылки событий с поддержкой буферизации при избыточной нагрузке.
-     *
-     * @return экземпляр Sinks.Many, предназначенный для публикации событий.
-     */
-    @Bean
-    public Sinks.Many<Event> eventPublisher() {
-        return Sinks.many().multicast().onBackpressureBuffer();
-    }
-
     /**
-     * Создает и возвращает поток событий (Flux), который будет воспроизводить последние 25 событий.
-     * Этот поток автоматически подключается и поддерживает многократное подключение.
+     * Создает диспетчер, закрепляющий каждый канал за одним потоком-шардом.
+     * Все события канала обрабатываются этим потоком по порядку поступления.
      *
-     * @param eventPublisher экземпляр Sinks.Many для публикации событий.
-     * @return поток событий, которые можно подписать.
+     * @param dispatchProperties настройки шардирования.
+     * @param meterRegistry      реестр метрик.
+     * @return диспетчер событий каналов.
      */
-    @Bean
-    public Flux<Event> events(Sinks.Many<Event> eventPublisher) {
-        return eventPublisher.asFlux()
-                .replay(25)
-                .autoConnect();
+    @Bean(destroyMethod = "dispose")
+    public ShardedDispatcher eventDispatcher(DispatchProperties dispatchProperties, MeterRegistry meterRegistry) {
+        return new ShardedDispatcher(dispatchProperties, meterRegistry);
     }
 
     /**
      * Настроит отображение URL для WebSocket с использованием обработчика событий чата.
      * URL "/ws" будет привязан к обработчику WebSocket.
      *
-     * @param events поток событий для обработки через WebSocket.
+     * @param chatSocketHandler обработчик WebSocket-сессий чата.
      * @return объект SimpleUrlHandlerMapping с привязкой URL.
      */
     @Bean
-    public HandlerMapping webSocketMapping(Flux<Event> events) {
-        Map<String, Object> urlMap = Map.of("/ws", new ChatSocketHandler(chatService, jsonUtils));
+    public HandlerMapping webSocketMapping(ChatSocketHandler chatSocketHandler) {
+        Map<String, Object> urlMap = Map.of("/ws", chatSocketHandler);
 
         SimpleUrlHandlerMapping handlerMapping = new SimpleUrlHandlerMapping();
         handlerMapping.setUrlMap(urlMap);
@@ -73,12 +63,40 @@ public class ChatSocketConfiguration {
     /**
      * Создает и возвращает адаптер для WebSocket обработчика.
      * Этот адаптер необходим для корректной работы с WebSocket в Spring.
+     * Если сжатие фреймов включено, рукопожатие выполняется стратегией,
+     * согласующей расширение permessage-deflate с заданными параметрами.
+     * Максимальный размер входящего сообщения передается кодеку Netty, поэтому слишком
+     * большой фрейм отвергается при чтении, не дожидаясь его сборки в памяти.
      *
+     * @param sessionProperties настройки WebSocket-сессий.
+     * @param meterRegistry     реестр метрик.
      * @return объект WebSocketHandlerAdapter.
      */
     @Bean
-    public WebSocketHandlerAdapter handlerAdapter() {
-        return new WebSocketHandlerAdapter();
+    public WebSocketHandlerAdapter handlerAdapter(SessionProperties sessionProperties, MeterRegistry meterRegistry) {
+        SessionProperties.Compression compression = sessionProperties.getCompression();
+        int maxFrameSize = (int) sessionProperties.getInbound().getMaxFrameSize().toBytes();
+        Supplier<WebsocketServerSpec.Builder> specBuilder = () -> WebsocketServerSpec.builder()
+                .maxFramePayloadLength(maxFrameSize);
+        RequestUpgradeStrategy upgradeStrategy = compression.isEnabled()
+                ? DeflateUpgradeStrategy.create(compression, meterRegistry, specBuilder)
+                : new ReactorNettyRequestUpgradeStrategy(specBuilder);
+        return new WebSocketHandlerAdapter(new HandshakeWebSocketService(upgradeStrategy));
+    }
+
+    /**
+     * Добавляет в конвейер каждого соединения сервера обработчик, замеряющий время
+     * от получения события до завершения записи его фрейма в сокет подписчика.
+     *
+     * @param meterRegistry реестр метрик.
+     * @return настройка сервера Netty.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "chat.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public NettyServerCustomizer writeLatencyCustomizer(MeterRegistry meterRegistry) {
+        WriteLatencyHandler handler = new WriteLatencyHandler(meterRegistry);
+        return httpServer -> httpServer.doOnChannelInit((observer, channel, remoteAddress) ->
+                channel.pipeline().addBefore(NettyPipeline.ReactiveBridge, WriteLatencyHandler.NAME, handler));
     }
 
 }
@@ -0,0 +1,51 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Настройки работы нескольких экземпляров приложения за балансировщиком.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.cluster")
+public class ClusterProperties {
+
+    /**
+     * Включает режим кластера: события доставляются подписчикам своего экземпляра сразу,
+     * а подписчикам остальных экземпляров - через поток изменений коллекции событий,
+     * который читает каждый экземпляр.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Идентификатор экземпляра, которым помечаются принятые им события. По умолчанию
+     * уникален для каждого запуска.
+     */
+    private String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Минимальный интервал между переоткрытиями потока изменений при изменении состава
+     * локальных каналов. Появление и освобождение каналов за интервал объединяются
+     * в одно переоткрытие.
+     */
+    private Duration reopenInterval = Duration.ofMillis(200);
+
+    /**
+     * Запас времени, с которым открывается первый поток изменений, чтобы не потерять
+     * события при расхождении часов экземпляра и кластера MongoDB.
+     */
+    private Duration startSlack = Duration.ofSeconds(1);
+
+    /**
+     * Пауза перед повторным открытием потока изменений после ошибки.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+}
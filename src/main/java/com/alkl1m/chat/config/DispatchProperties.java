@@ -0,0 +1,36 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки распределения обработки событий каналов по шардам.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.dispatch")
+public class DispatchProperties {
+
+    /**
+     * Число шардов. Нулевое значение означает число доступных процессоров.
+     */
+    private int shards = 0;
+
+    /**
+     * Максимальное число задач, ожидающих выполнения в одном шарде.
+     */
+    private int queueCapacity = 65_536;
+
+    /**
+     * Возвращает фактическое число шардов с учетом значения по умолчанию.
+     *
+     * @return число шардов.
+     */
+    public int resolveShards() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+}
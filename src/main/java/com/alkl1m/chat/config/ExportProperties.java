@@ -0,0 +1,29 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки выгрузки истории канала в NDJSON.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.export")
+public class ExportProperties {
+
+    /**
+     * Число документов, которое курсор MongoDB получает за один запрос к серверу.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Размер фрагмента ответа: строки NDJSON копятся до этого размера и отправляются
+     * клиенту одним буфером. Вместе с размером пакета курсора ограничивает память на одну выгрузку.
+     */
+    private DataSize chunkSize = DataSize.ofKilobytes(64);
+
+}
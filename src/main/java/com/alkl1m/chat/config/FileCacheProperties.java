@@ -0,0 +1,41 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки локального дискового кэша файлов, скачиваемых из GridFS.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.file-cache")
+public class FileCacheProperties {
+
+    /**
+     * Включает кэширование скачиваемых файлов на локальном диске.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Каталог кэша. Каждый экземпляр приложения создает в нем собственный подкаталог
+     * и удаляет его при остановке.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "chat-file-cache");
+
+    /**
+     * Суммарный размер файлов в кэше, при превышении которого вытесняются давно не запрашиваемые файлы.
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Максимальный размер файла, который помещается в кэш. Файлы большего размера отдаются напрямую из GridFS.
+     */
+    private DataSize maxFileSize = DataSize.ofMegabytes(100);
+
+}
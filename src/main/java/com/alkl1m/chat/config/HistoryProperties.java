@@ -0,0 +1,27 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки постраничной выдачи истории канала.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.history")
+public class HistoryProperties {
+
+    /**
+     * Размер страницы истории, если клиент не указал его явно.
+     */
+    private int pageSize = 50;
+
+    /**
+     * Максимальный размер страницы истории, который может запросить клиент.
+     */
+    private int maxPageSize = 200;
+
+}
@@ -0,0 +1,45 @@
+package com.alkl1m.chat.config;
+
+import com.alkl1m.chat.entity.Event;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Создает индексы, объявленные на сущностях, при старте приложения,
+ * до того как сервер начнет принимать запросы.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexInitializer {
+
+    private static final Duration INDEX_CREATION_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    /**
+     * Создает недостающие индексы коллекции событий.
+     */
+    @PostConstruct
+    public void createIndexes() {
+        IndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOperations = mongoTemplate.indexOps(Event.class);
+
+        Flux.fromIterable(indexResolver.resolveIndexFor(Event.class))
+                .concatMap(indexOperations::ensureIndex)
+                .doOnNext(index -> log.info("Ensured index: {}", index))
+                .blockLast(INDEX_CREATION_TIMEOUT);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки отложенной пакетной записи событий в MongoDB.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.persistence")
+public class PersistenceProperties {
+
+    /**
+     * Максимальное число событий в одной пакетной вставке.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Максимальное время ожидания заполнения пакета.
+     */
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    /**
+     * Максимальное число одновременно выполняемых пакетных вставок.
+     */
+    private int maxInFlight = 4;
+
+    /**
+     * Максимальное число событий, ожидающих записи. Сверх этого события отбрасываются.
+     */
+    private int maxPending = 100_000;
+
+    /**
+     * Число повторных попыток записи пакета при временных ошибках.
+     */
+    private int maxRetries = 3;
+
+    /**
+     * Начальная задержка перед повторной попыткой записи.
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    /**
+     * Время ожидания записи оставшихся событий при остановке приложения.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+}
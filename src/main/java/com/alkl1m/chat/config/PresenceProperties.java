@@ -0,0 +1,25 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки учета присутствия пользователей в каналах.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.presence")
+public class PresenceProperties {
+
+    /**
+     * Период рассылки накопленных изменений состава каналов. Вход и выход пользователя
+     * в пределах одного периода взаимно погашаются и не рассылаются.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+}
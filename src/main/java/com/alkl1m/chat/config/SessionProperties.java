@@ -0,0 +1,215 @@
+package com.alkl1m.chat.config;
+
+import com.alkl1m.chat.websocket.SlowConsumerPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки WebSocket-сессий чата.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.session")
+public class SessionProperties {
+
+    /**
+     * Настройки исходящей очереди каждой сессии.
+     */
+    private Outbound outbound = new Outbound();
+
+    /**
+     * Настройки досылки пропущенных событий при переподключении.
+     */
+    private Replay replay = new Replay();
+
+    /**
+     * Настройки сжатия фреймов расширением permessage-deflate.
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * Настройки проверки живости соединений.
+     */
+    private Heartbeat heartbeat = new Heartbeat();
+
+    /**
+     * Ограничения входящих фреймов.
+     */
+    private Inbound inbound = new Inbound();
+
+    /**
+     * Ограничения исходящей очереди, защищающие канал от медленных клиентов.
+     */
+    @Getter
+    @Setter
+    public static class Outbound {
+
+        /**
+         * Максимальное число событий, ожидающих отправки клиенту.
+         */
+        private int capacity = 256;
+
+        /**
+         * Поведение при заполнении очереди.
+         */
+        private SlowConsumerPolicy policy = SlowConsumerPolicy.DROP_OLDEST;
+
+        /**
+         * Допустимое отставание клиента для политики {@link SlowConsumerPolicy#DISCONNECT}.
+         */
+        private Duration maxLag = Duration.ofSeconds(5);
+
+    }
+
+    /**
+     * Досылка событий, пропущенных клиентом между отключением и повторным подключением.
+     */
+    @Getter
+    @Setter
+    public static class Replay {
+
+        /**
+         * Максимальное число досылаемых событий. Значение не должно превышать емкость
+         * исходящей очереди, иначе часть досылки может быть вытеснена из нее.
+         */
+        private int maxEvents = 200;
+
+        /**
+         * Максимальное число живых событий, накапливаемых на время досылки.
+         * При переполнении сессия закрывается, и клиент переподключается заново.
+         */
+        private int maxBuffered = 1024;
+
+    }
+
+    /**
+     * Сжатие исходящих и входящих фреймов расширением permessage-deflate (RFC 7692).
+     * Расширение включается, только если клиент запросил его при рукопожатии.
+     */
+    @Getter
+    @Setter
+    public static class Compression {
+
+        /**
+         * Предлагать ли клиентам сжатие фреймов.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Минимальный размер полезной нагрузки фрейма, начиная с которого он сжимается.
+         * Более короткие фреймы отправляются без сжатия: выигрыш на них не окупает затрат процессора.
+         */
+        private DataSize minFrameSize = DataSize.ofBytes(256);
+
+        /**
+         * Уровень сжатия zlib от 0 до 9.
+         */
+        private int level = 6;
+
+        /**
+         * Соглашаться ли на просьбу клиента не сохранять словарь сжатия сервера между сообщениями.
+         * Без контекста сервер не держит окно zlib на каждую сессию, но сжимает хуже.
+         */
+        private boolean allowServerNoContextTakeover = false;
+
+        /**
+         * Просить ли клиента не сохранять свой словарь сжатия между сообщениями.
+         */
+        private boolean requestClientNoContextTakeover = false;
+
+    }
+
+    /**
+     * Проверка живости соединений. Сервер периодически отправляет клиенту ping, браузер отвечает
+     * на него pong автоматически. Сессия, от которой дольше заданного времени не пришло ни одного
+     * фрейма, считается оборванной и закрывается вместе с подпиской на канал.
+     */
+    @Getter
+    @Setter
+    public static class Heartbeat {
+
+        /**
+         * Отправлять ли ping и закрывать ли молчащие сессии.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Период отправки ping и проверки молчания клиента.
+         */
+        private Duration interval = Duration.ofSeconds(20);
+
+        /**
+         * Время без входящих фреймов, после которого сессия закрывается. Должно превышать
+         * период ping с запасом на задержку ответа.
+         */
+        private Duration idleTimeout = Duration.ofSeconds(60);
+
+    }
+
+    /**
+     * Ограничения входящих фреймов, не позволяющие одному клиенту занять обработку событий узла.
+     * Размер фрейма проверяется кодеком Netty при чтении, до сборки фрейма и декодирования события,
+     * а размер сжатого permessage-deflate сообщения - сразу после его распаковки.
+     * Частота фреймов ограничивается корзинами токенов: своей у каждой сессии и общей у сессий канала.
+     * Фреймы сверх лимита частоты отбрасываются с уведомлением клиента, а после серии отброшенных
+     * подряд фреймов сессия закрывается. Сессия с фреймом сверх лимита размера закрывается.
+     * Лимит размера общий для всех событий, включая FILE_MESSAGE с файлом в base64: файлы,
+     * которые в него не укладываются, загружаются через REST.
+     */
+    @Getter
+    @Setter
+    public static class Inbound {
+
+        /**
+         * Максимальный размер полезной нагрузки входящего сообщения, в том числе собранного из фрагментов.
+         */
+        private DataSize maxFrameSize = DataSize.ofKilobytes(64);
+
+        /**
+         * Лимит частоты фреймов одной сессии.
+         */
+        private RateLimit sessionLimit = new RateLimit(20, 40);
+
+        /**
+         * Лимит частоты фреймов всех сессий одного канала на этом экземпляре.
+         */
+        private RateLimit channelLimit = new RateLimit(1000, 2000);
+
+        /**
+         * Число отброшенных лимитами частоты фреймов подряд, после которого сессия закрывается
+         * со статусом 1008. Значение 0 отключает закрытие.
+         */
+        private int maxRejectedFrames = 100;
+
+    }
+
+    /**
+     * Параметры корзины токенов.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RateLimit {
+
+        /**
+         * Число фреймов в секунду, на которое пополняется корзина. Значение 0 отключает лимит.
+         */
+        private double rate;
+
+        /**
+         * Емкость корзины: число фреймов, которые можно прислать подряд после паузы.
+         */
+        private int burst;
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки замеров задержки событий по стадиям конвейера.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.tracing")
+public class TracingProperties {
+
+    /**
+     * Замерять время от получения события до завершения его записи в сокет каждого подписчика.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Передавать клиентам момент получения события сервером в поле receivedAt.
+     */
+    private boolean exposeReceivedAt = false;
+
+}
@@ -0,0 +1,23 @@
+package com.alkl1m.chat.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки загрузки файлов в чат.
+ *
+ * @author AlKl1M
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.upload")
+public class UploadProperties {
+
+    /**
+     * Максимальный размер загружаемого файла.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(100);
+
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.thymeleaf.spring6.context.webflux.ReactiveDataDriverContextVariable;
 import reactor.core.publisher.Flux;
 
 /**
@@ -18,6 +19,8 @@ import reactor.core.publisher.Flux;
 @RequiredArgsConstructor
 public class ChatPageController {
 
+    private static final int RENDER_BUFFER_SIZE = 10;
+
     private final ChatService chatService;
 
     /**
@@ -33,6 +36,10 @@ public class ChatPageController {
     /**
      * Обрабатывает запрос на страницу чата, получая сообщения для указанного канала.
      * Добавляет данные канала и сообщения в модель для отображения на странице.
+     * Страница содержит только последнюю страницу истории и отрисовывается в режиме
+     * управления данными Thymeleaf: разметка до списка сообщений отправляется сразу,
+     * а сообщения - порциями по мере получения. Более ранние сообщения клиент
+     * подгружает постранично через API истории.
      *
      * @param channelId идентификатор канала для получения сообщений.
      * @param model     модель, в которую добавляются атрибуты для отображения.
@@ -43,7 +50,7 @@ public class ChatPageController {
         Flux<Event> messages = chatService.getMessagesByChannelId(channelId);
 
         model.addAttribute("channelId", channelId);
-        model.addAttribute("messages", messages);
+        model.addAttribute("messages", new ReactiveDataDriverContextVariable(messages, RENDER_BUFFER_SIZE));
 
         return "chat";
     }
@@ -1,15 +1,21 @@
 package com.alkl1m.chat.controller;
 
+import com.alkl1m.chat.channel.PresenceSnapshot;
 import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.service.ChatService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+
 /**
  * REST API для обработки событий в чате. Содержит методы, которые
  * актуализируют состояние чата или выполняют операции, не требующие соединения в вебсокете.
@@ -23,15 +29,75 @@ public class EventController {
     private final ChatService chatService;
 
     /**
-     * Получает историю событий для указанной сессии.
-     * Возвращает список сообщений, связанных с указанным идентификатором канала (сессии).
+     * Получает страницу истории событий для указанной сессии.
+     * Без курсоров возвращает последнюю страницу сообщений канала (сессии), с курсором before -
+     * более ранние сообщения, с курсором after - более поздние. Курсором служит идентификатор события.
      *
      * @param sessionId идентификатор сессии для получения истории событий.
-     * @return поток событий (Flux) для указанного sessionId.
+     * @param before    идентификатор события, до которого нужно вернуть сообщения.
+     * @param after     идентификатор события, после которого нужно вернуть сообщения.
+     * @param limit     размер страницы, ограниченный настройками истории.
+     * @return поток событий (Flux) страницы в хронологическом порядке.
      */
     @GetMapping("/api/events/{sessionId}")
-    public Flux<Event> getEventHistory(@PathVariable String sessionId) {
-        return chatService.getMessagesByChannelId(sessionId);
+    public Flux<Event> getEventHistory(@PathVariable String sessionId,
+                                       @RequestParam(required = false) String before,
+                                       @RequestParam(required = false) String after,
+                                       @RequestParam(required = false) Integer limit) {
+        return chatService.getMessagesByChannelId(sessionId, before, after, limit);
+    }
+
+    /**
+     * Выгружает историю канала в NDJSON: по одному событию в строке, от старых к новым.
+     * Выгрузка передается потоком из курсора MongoDB и не накапливается в памяти,
+     * поэтому подходит для каналов любого размера. Границы периода задаются с точностью до секунды.
+     *
+     * @param channelId идентификатор канала.
+     * @param from      начало периода включительно (ISO-8601), без него - с начала истории.
+     * @param to        конец периода не включительно (ISO-8601), без него - до конца истории.
+     * @param gzip      сжимать ли выгрузку gzip.
+     * @param exchange  обмен сервером для записи ответа.
+     * @return Mono<Void>, завершение выгрузки.
+     */
+    @GetMapping("/api/events/export/{channelId}")
+    public Mono<Void> exportEvents(@PathVariable String channelId,
+                                   @RequestParam(required = false) Instant from,
+                                   @RequestParam(required = false) Instant to,
+                                   @RequestParam(defaultValue = "false") boolean gzip,
+                                   ServerWebExchange exchange) {
+        return chatService.exportEvents(channelId, from, to, gzip, exchange);
+    }
+
+    /**
+     * Возвращает состав канала: число пользователей с открытыми сессиями и их имена.
+     * Клиент запрашивает состав при подключении и дальше поддерживает его по событиям PRESENCE.
+     *
+     * @param channelId идентификатор канала.
+     * @param members   нужно ли перечислять участников; без них ответ не зависит от размера канала.
+     * @return состав канала.
+     */
+    @GetMapping("/api/presence/{channelId}")
+    public Mono<PresenceSnapshot> getPresence(@PathVariable String channelId,
+                                              @RequestParam(defaultValue = "true") boolean members) {
+        return Mono.fromSupplier(() -> chatService.getPresence(channelId, members));
+    }
+
+    /**
+     * Загружает файл в канал. Тело запроса - содержимое файла как есть, без multipart и base64;
+     * оно передается в GridFS потоком, а файл объявляется в канале после завершения сохранения.
+     *
+     * @param channelId идентификатор канала, в котором публикуется файл.
+     * @param filename  имя файла.
+     * @param nickname  имя отправителя.
+     * @param request   запрос с содержимым файла и его типом в заголовке Content-Type.
+     * @return событие, объявившее файл в канале.
+     */
+    @PostMapping("/api/events/upload/{channelId}")
+    public Mono<Event> uploadFile(@PathVariable String channelId,
+                                  @RequestParam String filename,
+                                  @RequestParam(required = false) String nickname,
+                                  ServerHttpRequest request) {
+        return chatService.uploadFile(channelId, nickname, filename, request.getHeaders().getContentType(), request.getBody());
     }
 
     /**
@@ -1,17 +1,28 @@
 package com.alkl1m.chat.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
+
 /**
  * Основная сущность для каждого события.
  * В случае, если это сообщение или подобное событие, то filename и другие
  * связанные с файлом поля пустые. Иначе - наоборот.
+ * Индекс по каналу и идентификатору обслуживает постраничную выдачу истории канала.
+ * Момент получения события сервером по монотонным часам используется только для
+ * замеров задержки внутри процесса и не сохраняется и не передается клиентам.
+ * Поля joined, left и memberCount заполняются только у изменений состава канала (PRESENCE),
+ * которые рассылаются сервером и не сохраняются.
  *
  * @author AlKl1M
  */
@@ -21,6 +32,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document(collection = "events")
+@CompoundIndex(name = "channelId_id", def = "{'channelId': 1, '_id': 1}")
 public class Event {
 
     @Id
@@ -38,4 +50,42 @@ public class Event {
 
     private String fileData;
 
+    /**
+     * Идентификатор файла в GridFS у файловых событий. Идентификатор самого события назначается
+     * при объявлении файла в канале, а не в начале загрузки, чтобы события файла сохраняли
+     * порядок с остальными событиями канала.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String fileId;
+
+    /**
+     * Момент получения события сервером в миллисекундах эпохи. Заполняется, только если включена
+     * передача отметки клиентам, и передается только в живых JSON-фреймах: в MongoDB поле
+     * не сохраняется, поэтому в истории, досылке из базы и событиях других экземпляров его нет.
+     */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long receivedAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> joined;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> left;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer memberCount;
+
+    /**
+     * Идентификатор экземпляра приложения, принявшего событие в режиме кластера. Сохраняется
+     * вместе с событием, чтобы экземпляр не доставлял повторно свои события из потока изменений,
+     * и не передается клиентам.
+     */
+    @JsonIgnore
+    private String origin;
+
+    @Transient
+    @JsonIgnore
+    private long receivedNanos;
+
 }
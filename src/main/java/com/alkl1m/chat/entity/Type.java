@@ -2,14 +2,69 @@ package com.alkl1m.chat.entity;
 
 /**
  * Тип события.
+ * Каждому типу назначен постоянный код, которым тип передается в компактном
+ * бинарном протоколе. Коды не зависят от порядка объявления констант.
+ * USER_JOINED и USER_LEFT остались от событий присутствия, которые присылали клиенты,
+ * и встречаются только в сохраненной истории; теперь присутствие рассылается сервером
+ * пакетными изменениями состава канала с типом PRESENCE. ERROR - уведомление сервера отправителю
+ * о том, что его событие не принято; причина передается в поле message. Такие уведомления
+ * не рассылаются в канал и не сохраняются.
  *
  * @author AlKl1M
  */
 public enum Type {
 
-    CHAT_MESSAGE,
-    FILE_MESSAGE,
-    USER_JOINED,
-    USER_LEFT
+    CHAT_MESSAGE(0),
+    FILE_MESSAGE(1),
+    USER_JOINED(2),
+    USER_LEFT(3),
+    PRESENCE(4),
+    ERROR(5);
+
+    private static final Type[] BY_CODE = new Type[values().length];
+
+    static {
+        for (Type type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+
+    Type(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Возвращает код типа в компактном протоколе.
+     *
+     * @return код типа.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Проверяет, что тип относится к событиям присутствия пользователей в канале.
+     *
+     * @return true для изменений состава канала и устаревших событий входа и выхода.
+     */
+    public boolean isPresence() {
+        return this == USER_JOINED || this == USER_LEFT || this == PRESENCE;
+    }
+
+    /**
+     * Возвращает тип по коду компактного протокола.
+     *
+     * @param code код типа.
+     * @return тип события.
+     * @throws IllegalArgumentException если код неизвестен.
+     */
+    public static Type fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown event type code: " + code);
+        }
+        return BY_CODE[code];
+    }
 
 }
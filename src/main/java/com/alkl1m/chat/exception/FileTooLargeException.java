@@ -0,0 +1,18 @@
+package com.alkl1m.chat.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, возникающее, когда загружаемый файл превышает допустимый размер.
+ *
+ * @author AlKl1M
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class FileTooLargeException extends RuntimeException {
+
+    public FileTooLargeException(String message) {
+        super(message);
+    }
+
+}
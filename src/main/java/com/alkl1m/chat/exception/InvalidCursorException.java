@@ -0,0 +1,18 @@
+package com.alkl1m.chat.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, возникающее при некорректном курсоре постраничной выдачи истории.
+ *
+ * @author AlKl1M
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,427 @@
+package com.alkl1m.chat.file;
+
+import com.alkl1m.chat.config.FileCacheProperties;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру кэш файлов GridFS на локальном диске. Файлы вытесняются в порядке
+ * давности последнего обращения. Промах не задерживает ответ и не добавляет чтений из GridFS:
+ * файл, отдаваемый целиком, сохраняется в кэш по мере отдачи, а по частичным запросам файл
+ * загружается в фоне только при повторном промахе. Одновременно файл загружается в кэш
+ * только одним запросом. Размер загружаемых
+ * файлов резервируется в лимите кэша до завершения загрузки. Файл, который сейчас отдается
+ * клиенту, удаляется с диска только после завершения всех отдач.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileDiskCache {
+
+    /**
+     * Число файлов, для которых запоминается первый промах по диапазону.
+     */
+    private static final int MAX_RANGE_MISSES = 1024;
+
+    private final FileCacheProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> fills = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<String, Boolean> rangeMisses = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RANGE_MISSES;
+        }
+    };
+
+    private long cachedBytes;
+    private long reservedBytes;
+    private Path directory;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    /**
+     * Создает каталог кэша этого экземпляра приложения и регистрирует метрики кэша.
+     *
+     * @throws IOException если каталог кэша не удалось создать.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        hits = Counter.builder("chat.file-cache.hits")
+                .description("Number of downloads served from the local disk cache")
+                .register(meterRegistry);
+        misses = Counter.builder("chat.file-cache.misses")
+                .description("Number of downloads that had to read the file from GridFS")
+                .register(meterRegistry);
+        evictions = Counter.builder("chat.file-cache.evictions")
+                .description("Number of files evicted from the local disk cache")
+                .register(meterRegistry);
+        Gauge.builder("chat.file-cache.size", this, FileDiskCache::cachedBytes)
+                .description("Total size of files held in the local disk cache")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        Gauge.builder("chat.file-cache.entries", this, FileDiskCache::size)
+                .description("Number of files held in the local disk cache")
+                .register(meterRegistry);
+
+        if (properties.isEnabled()) {
+            Files.createDirectories(properties.getDirectory());
+            directory = Files.createTempDirectory(properties.getDirectory(), "node-");
+            log.info("File cache directory: {}", directory);
+        }
+    }
+
+    /**
+     * Удаляет каталог кэша этого экземпляра приложения.
+     */
+    @PreDestroy
+    public void stop() {
+        if (directory == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.clear();
+            cachedBytes = 0;
+        }
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            log.warn("Failed to delete file cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает метаданные файла, если файл находится в кэше. Позволяет ответить на
+     * запрос из кэша, не обращаясь к коллекции fs.files.
+     *
+     * @param fileId идентификатор файла.
+     * @return метаданные файла или null, если файла нет в кэше.
+     */
+    public GridFSFile lookup(String fileId) {
+        synchronized (entries) {
+            Entry entry = entries.get(fileId);
+            return entry != null ? entry.file : null;
+        }
+    }
+
+    /**
+     * Захватывает локальную копию файла для отдачи клиенту. Промах ничего не загружает:
+     * вызывающая сторона отдает файл из GridFS и может передать поток в
+     * {@link #cacheWhileStreaming} или сообщить о промахе по диапазону через {@link #onRangeMiss}.
+     * Полученную копию необходимо освободить вызовом {@link Entry#release()}.
+     *
+     * @param file метаданные файла в GridFS.
+     * @return захваченная копия или null, если файла нет в кэше или он не кэшируется.
+     */
+    public Entry acquire(GridFSFile file) {
+        if (!isCacheable(file)) {
+            return null;
+        }
+
+        Entry cached = retainCached(file.getObjectId().toHexString());
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Сохраняет файл в кэш по мере его отдачи клиенту, не читая GridFS повторно. Каждый
+     * буфер записывается на диск и затем передается дальше. Временный файл открывается
+     * в потоке для блокирующих операций, как и перенос копии в кэш. Если файл уже загружается
+     * другим запросом или для него нет места, поток возвращается без изменений. Если клиент
+     * прервал загрузку, недописанная копия удаляется.
+     *
+     * @param file    метаданные файла в GridFS.
+     * @param content содержимое файла целиком из GridFS.
+     * @return то же содержимое, попутно сохраняемое в кэш.
+     */
+    public Flux<DataBuffer> cacheWhileStreaming(GridFSFile file, Flux<DataBuffer> content) {
+        if (!isCacheable(file)) {
+            return content;
+        }
+        String fileId = file.getObjectId().toHexString();
+        if (!startFill(fileId, file.getLength())) {
+            return content;
+        }
+
+        Path target = directory.resolve(fileId + "-" + UUID.randomUUID());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        AtomicBoolean registered = new AtomicBoolean();
+        return Flux.usingWhen(
+                        Mono.fromCallable(() -> AsynchronousFileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        channel -> DataBufferUtils.write(content, channel),
+                        channel -> Mono.fromRunnable(() -> close(channel)))
+                .concatWith(Mono.fromCallable(() -> moveToCache(file, fileId, temp, target))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .doOnNext(entry -> registered.set(true))
+                        .onErrorResume(error -> {
+                            log.warn("Failed to cache file {}: {}", fileId, error.getMessage());
+                            return Mono.empty();
+                        })
+                        .then(Mono.empty()))
+                .doFinally(signal -> finishFill(fileId, file.getLength(), temp, registered.get()));
+    }
+
+    /**
+     * Учитывает промах по диапазону. Чтобы частичные запросы не вызывали полного чтения файла
+     * из GridFS, файл загружается в кэш в фоне только при повторном промахе по диапазону.
+     *
+     * @param file    метаданные файла в GridFS.
+     * @param content поставщик содержимого файла целиком из GridFS.
+     */
+    public void onRangeMiss(GridFSFile file, Supplier<Flux<DataBuffer>> content) {
+        if (!isCacheable(file)) {
+            return;
+        }
+        String fileId = file.getObjectId().toHexString();
+        synchronized (rangeMisses) {
+            if (rangeMisses.remove(fileId) == null) {
+                rangeMisses.put(fileId, Boolean.TRUE);
+                return;
+            }
+        }
+        if (startFill(fileId, file.getLength())) {
+            fill(file, fileId, content).subscribe(null,
+                    error -> log.warn("Failed to cache file {}: {}", fileId, error.getMessage()));
+        }
+    }
+
+    /**
+     * Возвращает число файлов в кэше.
+     *
+     * @return число файлов.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean isCacheable(GridFSFile file) {
+        return directory != null
+                && file.getId().isObjectId()
+                && file.getLength() <= properties.getMaxFileSize().toBytes()
+                && file.getLength() <= properties.getMaxSize().toBytes();
+    }
+
+    private Entry retainCached(String fileId) {
+        synchronized (entries) {
+            Entry entry = entries.get(fileId);
+            return entry != null && entry.retain() ? entry : null;
+        }
+    }
+
+    /**
+     * Резервирует место под загружаемый файл, вытесняя давно не запрашиваемые файлы.
+     * Если место занято другими незавершенными загрузками, файл в этот раз не кэшируется.
+     */
+    private boolean reserve(long length) {
+        long maxSize = properties.getMaxSize().toBytes();
+        synchronized (entries) {
+            if (reservedBytes + length > maxSize) {
+                return false;
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (cachedBytes + reservedBytes + length > maxSize && eldest.hasNext()) {
+                Entry candidate = eldest.next();
+                eldest.remove();
+                cachedBytes -= candidate.file.getLength();
+                candidate.evict();
+                evictions.increment();
+            }
+            reservedBytes += length;
+            return true;
+        }
+    }
+
+    /**
+     * Резервирует место под загрузку файла. Одновременно файл загружается в кэш только одним запросом.
+     */
+    private boolean startFill(String fileId, long length) {
+        if (!fills.add(fileId)) {
+            return false;
+        }
+        if (!reserve(length)) {
+            fills.remove(fileId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Загружает файл из GridFS во временный файл и переносит его в кэш.
+     */
+    private Mono<Entry> fill(GridFSFile file, String fileId, Supplier<Flux<DataBuffer>> content) {
+        Path target = directory.resolve(fileId + "-" + UUID.randomUUID());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        return DataBufferUtils.write(Flux.defer(content), temp)
+                .then(Mono.fromCallable(() -> moveToCache(file, fileId, temp, target))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .doFinally(signal -> finishFill(fileId, file.getLength(), temp, signal == SignalType.ON_COMPLETE));
+    }
+
+    /**
+     * Проверяет размер загруженной копии и атомарно переносит ее в кэш. Каждая копия получает
+     * уникальное имя, поэтому удаление вытесненной копии не затрагивает более позднюю копию того же файла.
+     */
+    private Entry moveToCache(GridFSFile file, String fileId, Path temp, Path target) throws IOException {
+        long written = Files.size(temp);
+        if (written != file.getLength()) {
+            throw new IOException("Expected " + file.getLength() + " bytes but got " + written);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return register(fileId, new Entry(file, target));
+    }
+
+    /**
+     * Завершает загрузку файла. Если копия не попала в кэш, резерв места снимается,
+     * а временный файл удаляется.
+     */
+    private void finishFill(String fileId, long length, Path temp, boolean registered) {
+        if (!registered) {
+            unreserve(length);
+            delete(temp);
+        }
+        fills.remove(fileId);
+    }
+
+    /**
+     * Добавляет загруженный файл в кэш, переводя зарезервированное под него место в занятое.
+     */
+    private Entry register(String fileId, Entry entry) {
+        synchronized (entries) {
+            reservedBytes -= entry.file.getLength();
+            Entry previous = entries.put(fileId, entry);
+            if (previous != null) {
+                cachedBytes -= previous.file.getLength();
+                previous.evict();
+            }
+            cachedBytes += entry.file.getLength();
+        }
+        return entry;
+    }
+
+    private void unreserve(long length) {
+        synchronized (entries) {
+            reservedBytes -= length;
+        }
+    }
+
+    private double cachedBytes() {
+        synchronized (entries) {
+            return cachedBytes;
+        }
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close cached file: {}", e.getMessage());
+        }
+    }
+
+    private static void delete(Path path) {
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete cached file {}: {}", path, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Файл в локальном кэше. Пока копия захвачена хотя бы одной отдачей, вытесненный
+     * файл остается на диске и удаляется после последнего освобождения.
+     */
+    public static final class Entry {
+
+        private static final int EVICTED = Integer.MIN_VALUE / 2;
+
+        private final GridFSFile file;
+        private final Path path;
+        private final AtomicInteger readers = new AtomicInteger();
+
+        private Entry(GridFSFile file, Path path) {
+            this.file = file;
+            this.path = path;
+        }
+
+        public GridFSFile getFile() {
+            return file;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Освобождает копию, захваченную для отдачи клиенту.
+         */
+        public void release() {
+            if (readers.decrementAndGet() == EVICTED) {
+                delete(path);
+            }
+        }
+
+        private boolean retain() {
+            int current;
+            do {
+                current = readers.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!readers.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void evict() {
+            if (readers.addAndGet(EVICTED) == EVICTED) {
+                delete(path);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.alkl1m.chat.file;
+
+import com.alkl1m.chat.util.MeterUtils;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsResource;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Отдает файлы из GridFS по HTTP с поддержкой условных запросов и запросов диапазонов.
+ * Файлы в GridFS неизменяемы, поэтому ETag строится из идентификатора файла, а диапазон
+ * читается только из тех чанков коллекции fs.chunks, которые его покрывают.
+ * Часто запрашиваемые файлы отдаются из локального дискового кэша {@link FileDiskCache}.
+ * Длительность отдачи файла записывается в таймер chat.file.download.
+ *
+ * @author AlKl1M
+ */
+@Component
+@RequiredArgsConstructor
+public class GridFsFileDownloader {
+
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+    private static final String CONTENT_TYPE_KEY = "_contentType";
+    private static final String BYTES_UNIT = "bytes";
+    private static final int DISK_BUFFER_SIZE = 64 * 1024;
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate();
+
+    private final ReactiveGridFsTemplate gridFsTemplate;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final FileDiskCache fileCache;
+    private final MeterRegistry meterRegistry;
+
+    private MeterUtils.OutcomeTimers downloadLatency;
+
+    /**
+     * Регистрирует метрики отдачи файлов.
+     */
+    @PostConstruct
+    public void start() {
+        downloadLatency = MeterUtils.outcomeTimers(meterRegistry, "chat.file.download", "Time to serve a file download");
+    }
+
+    /**
+     * Отдает файл по идентификатору. Если файл не найден, ответ остается пустым.
+     * Метаданные файлов из локального кэша берутся без обращения к MongoDB.
+     *
+     * @param fileId   идентификатор файла в GridFS.
+     * @param exchange объект для обработки запроса на сервере.
+     * @return Mono, представляющее завершение записи ответа.
+     */
+    public Mono<Void> download(String fileId, ServerWebExchange exchange) {
+        GridFSFile cached = fileCache.lookup(fileId);
+        Mono<GridFSFile> file = cached != null
+                ? Mono.just(cached)
+                : gridFsTemplate.findOne(query(where("_id").is(fileId)));
+        return MeterUtils.timed(file.flatMap(found -> write(found, exchange)), downloadLatency);
+    }
+
+    /**
+     * Заполняет заголовки ответа и выбирает вид ответа: 304, 206, 416 или полный файл.
+     *
+     * @param file     метаданные файла в GridFS.
+     * @param exchange объект для обработки запроса на сервере.
+     * @return Mono, представляющее завершение записи ответа.
+     */
+    private Mono<Void> write(GridFSFile file, ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        String etag = etagOf(file);
+        Instant lastModified = file.getUploadDate().toInstant();
+        long length = file.getLength();
+
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.setCacheControl(CACHE_CONTROL);
+        headers.set(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.setContentType(contentTypeOf(file));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(file.getFilename(), StandardCharsets.UTF_8)
+                .build());
+
+        if (exchange.checkNotModified(etag, lastModified)) {
+            return response.setComplete();
+        }
+
+        HttpRange range = requestedRange(exchange.getRequest(), etag);
+        if (range == null) {
+            headers.setContentLength(length);
+            return writeBody(file, response, 0, length - 1);
+        }
+
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            headers.set(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_DISPOSITION);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        headers.set(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " " + start + "-" + end + "/" + length);
+        headers.setContentLength(end - start + 1);
+        return writeBody(file, response, start, end);
+    }
+
+    /**
+     * Записывает байты файла с start по end включительно. Если файл есть в локальном кэше,
+     * он передается с диска без копирования в пространство пользователя. Иначе запрошенные
+     * байты сразу читаются из GridFS. Файл, отдаваемый целиком, попутно сохраняется в кэш;
+     * частичный запрос учитывается политикой допуска кэша и не вызывает лишнего чтения.
+     *
+     * @param file     метаданные файла в GridFS.
+     * @param response HTTP-ответ.
+     * @param start    первый байт включительно.
+     * @param end      последний байт включительно.
+     * @return Mono, представляющее завершение записи ответа.
+     */
+    private Mono<Void> writeBody(GridFSFile file, ServerHttpResponse response, long start, long end) {
+        if (end < start) {
+            return response.setComplete();
+        }
+        FileDiskCache.Entry local = fileCache.acquire(file);
+        if (local != null) {
+            return writeFromDisk(response, local, start, end - start + 1);
+        }
+        if (start == 0 && end == file.getLength() - 1) {
+            return response.writeWith(fileCache.cacheWhileStreaming(file, downloadStream(file)));
+        }
+        fileCache.onRangeMiss(file, () -> downloadStream(file));
+        return response.writeWith(readRange(file, start, end, response.bufferFactory()));
+    }
+
+    /**
+     * Передает часть локальной копии файла в ответ. Для сервера на Netty используется
+     * {@link ZeroCopyHttpOutputMessage}, которое передает файл через FileChannel.transferTo.
+     *
+     * @param response HTTP-ответ.
+     * @param entry    захваченная копия файла в кэше.
+     * @param position смещение первого байта.
+     * @param count    число байтов.
+     * @return Mono, представляющее завершение записи ответа.
+     */
+    private Mono<Void> writeFromDisk(ServerHttpResponse response, FileDiskCache.Entry entry, long position, long count) {
+        Path path = entry.getPath();
+        Mono<Void> body = response instanceof ZeroCopyHttpOutputMessage zeroCopy
+                ? zeroCopy.writeWith(path, position, count)
+                : response.writeWith(DataBufferUtils.takeUntilByteCount(
+                        DataBufferUtils.readAsynchronousFileChannel(
+                                () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ),
+                                position, response.bufferFactory(), DISK_BUFFER_SIZE),
+                        count));
+        return body.doFinally(signal -> entry.release());
+    }
+
+    private Flux<DataBuffer> downloadStream(GridFSFile file) {
+        return gridFsTemplate.getResource(file)
+                .flatMapMany(ReactiveGridFsResource::getDownloadStream);
+    }
+
+    /**
+     * Определяет единственный запрошенный диапазон. Некорректный заголовок Range, несколько
+     * диапазонов и несовпадающий If-Range приводят к отдаче файла целиком, как допускает RFC 9110.
+     *
+     * @param request HTTP-запрос.
+     * @param etag    текущий ETag файла.
+     * @return запрошенный диапазон или null, если нужно отдать файл целиком.
+     */
+    private HttpRange requestedRange(ServerHttpRequest request, String etag) {
+        String rangeHeader = request.getHeaders().getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeaders().getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    /**
+     * Читает диапазон байтов файла напрямую из чанков GridFS, не затрагивая чанки вне диапазона.
+     * Данные чанков оборачиваются в буферы без копирования.
+     *
+     * @param file          метаданные файла в GridFS.
+     * @param start         первый байт диапазона включительно.
+     * @param end           последний байт диапазона включительно.
+     * @param bufferFactory фабрика буферов ответа.
+     * @return поток буферов с содержимым диапазона.
+     */
+    private Flux<DataBuffer> readRange(GridFSFile file, long start, long end, DataBufferFactory bufferFactory) {
+        int chunkSize = file.getChunkSize();
+        int firstChunk = (int) (start / chunkSize);
+        int lastChunk = (int) (end / chunkSize);
+
+        Object filesId = file.getId().isObjectId() ? file.getObjectId() : file.getId();
+        Query chunks = query(where("files_id").is(filesId)
+                .and("n").gte(firstChunk).lte(lastChunk))
+                .with(Sort.by("n"));
+        chunks.fields().include("n", "data");
+
+        return mongoTemplate.find(chunks, Document.class, CHUNKS_COLLECTION)
+                .map(chunk -> {
+                    byte[] data = chunkData(chunk);
+                    long chunkStart = (long) chunk.getInteger("n") * chunkSize;
+                    int from = (int) Math.max(0, start - chunkStart);
+                    int to = (int) Math.min(data.length, end - chunkStart + 1);
+                    return bufferFactory.wrap(ByteBuffer.wrap(data, from, to - from));
+                });
+    }
+
+    /**
+     * Извлекает содержимое чанка GridFS.
+     *
+     * @param chunk документ чанка.
+     * @return байты чанка.
+     */
+    private static byte[] chunkData(Document chunk) {
+        Object data = chunk.get("data");
+        return data instanceof Binary binary ? binary.getData() : (byte[]) data;
+    }
+
+    /**
+     * Строит сильный ETag файла. Содержимое файла в GridFS не меняется после сохранения,
+     * поэтому идентификатора достаточно.
+     *
+     * @param file метаданные файла в GridFS.
+     * @return ETag в кавычках.
+     */
+    static String etagOf(GridFSFile file) {
+        String id = file.getId().isObjectId()
+                ? file.getObjectId().toHexString()
+                : file.getId().asString().getValue();
+        return "\"" + id + "\"";
+    }
+
+    /**
+     * Определяет тип содержимого файла: сначала по типу, сохраненному при загрузке,
+     * затем, если тип не сохранен или неинформативен, по расширению имени файла.
+     *
+     * @param file метаданные файла в GridFS.
+     * @return тип содержимого или application/octet-stream, если его не удалось определить.
+     */
+    static MediaType contentTypeOf(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        String stored = metadata != null ? metadata.getString(CONTENT_TYPE_KEY) : null;
+        if (stored != null) {
+            try {
+                MediaType mediaType = MediaType.parseMediaType(stored);
+                if (!MediaType.APPLICATION_OCTET_STREAM.equals(mediaType)) {
+                    return mediaType;
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Тип определяется по имени файла ниже
+            }
+        }
+        return MediaTypeFactory.getMediaType(file.getFilename())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+}
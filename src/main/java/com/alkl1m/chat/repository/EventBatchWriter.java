@@ -0,0 +1,275 @@
+package com.alkl1m.chat.repository;
+
+import com.alkl1m.chat.config.PersistenceProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.util.MeterUtils;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.util.MongoDbErrorCodes;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Отложенная запись событий в MongoDB. События копятся в очереди и записываются
+ * неупорядоченными пакетными вставками по достижении размера пакета или по таймеру,
+ * вместо отдельной вставки на каждое сообщение.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventBatchWriter {
+
+    /**
+     * Коды ошибок отдельных документов, после которых документ может быть записан повторной попыткой:
+     * конфликт записи, смена основного узла реплики, прерывание и превышение времени операции.
+     * Остальные ошибки, например нарушение схемы документа, повтором не исправляются.
+     */
+    private static final Set<Integer> TRANSIENT_WRITE_CODES = Set.of(24, 50, 112, 189, 262, 10107, 11600, 11602, 13435);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final PersistenceProperties persistenceProperties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean closed;
+    private FluxSink<Event> queue;
+    private CompletableFuture<Void> completion;
+    private DistributionSummary batchSizes;
+    private Counter failures;
+    private Counter retries;
+    private Counter dropped;
+    private Timer persistedLatency;
+    private MeterUtils.OutcomeTimers insertLatency;
+
+    /**
+     * Регистрирует метрики и запускает конвейер пакетной записи.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("chat.persistence.pending", pending, AtomicInteger::get)
+                .description("Events waiting to be written to MongoDB")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("chat.persistence.batch.size")
+                .description("Number of events per bulk insert")
+                .register(meterRegistry);
+        failures = Counter.builder("chat.persistence.failures")
+                .description("Events in bulk inserts that failed after retries")
+                .register(meterRegistry);
+        retries = Counter.builder("chat.persistence.retries")
+                .description("Bulk insert attempts repeated after a transient error")
+                .register(meterRegistry);
+        dropped = Counter.builder("chat.persistence.dropped")
+                .description("Events rejected because the write-behind queue was full or closed")
+                .register(meterRegistry);
+        persistedLatency = Timer.builder("chat.event.latency")
+                .description("Time from receiving an event to reaching a pipeline stage")
+                .tag("stage", "persisted")
+                .register(meterRegistry);
+        insertLatency = MeterUtils.outcomeTimers(meterRegistry, "chat.persistence.latency",
+                "Time to insert a batch of events, including retries");
+
+        completion = Flux.<Event>create(emitter -> queue = emitter)
+                .bufferTimeout(persistenceProperties.getBatchSize(), persistenceProperties.getFlushInterval(), true)
+                .flatMap(this::insertBatch, persistenceProperties.getMaxInFlight())
+                .then()
+                .toFuture();
+    }
+
+    /**
+     * Закрывает очередь для новых событий и ждет записи оставшихся. События, поставленные
+     * в очередь одновременно с закрытием и не попавшие в конвейер, учитываются как отброшенные.
+     */
+    @PreDestroy
+    public void stop() {
+        closed = true;
+        queue.complete();
+        try {
+            completion.get(persistenceProperties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            int lost = pending.getAndSet(0);
+            if (lost > 0) {
+                dropped.increment(lost);
+                log.error("Dropped {} events written during shutdown", lost);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Error flushing {} pending events on shutdown: {}", pending.get(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ставит событие в очередь на запись. Событию без идентификатора присваивается ObjectId,
+     * чтобы он был известен сразу, а не после фактической вставки.
+     *
+     * @param event событие для сохранения.
+     * @return false, если очередь закрыта или переполнена и событие отброшено.
+     */
+    public boolean write(Event event) {
+        if (event.getId() == null) {
+            event.setId(new ObjectId().toString());
+        }
+        if (closed) {
+            dropped.increment();
+            log.error("Write-behind queue is closed, dropping event: {}", event.getId());
+            return false;
+        }
+        if (pending.incrementAndGet() > persistenceProperties.getMaxPending()) {
+            pending.decrementAndGet();
+            dropped.increment();
+            log.error("Write-behind queue is full, dropping event: {}", event.getId());
+            return false;
+        }
+        queue.next(event);
+        return true;
+    }
+
+    /**
+     * Записывает пакет, повторяя попытку после временных ошибок пакета и отдельных документов.
+     * Временная ошибка может произойти, когда часть документов уже записана, поэтому при повторе
+     * ошибка дубликата ключа означает, что документ записан предыдущей попыткой. Повторная
+     * попытка отправляет только документы с временной ошибкой; документы с постоянной ошибкой
+     * сразу учитываются как несохраненные и не занимают слот записи повторами. Размер пакета
+     * и задержка до сохранения записываются только для принятых базой данных документов.
+     *
+     * @param batch пакет событий.
+     * @return Mono, завершающееся после записи пакета или исчерпания попыток.
+     */
+    private Mono<Void> insertBatch(List<Event> batch) {
+        AtomicReference<List<Event>> remaining = new AtomicReference<>(batch);
+        Set<Event> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        Mono<Void> insert = Mono.defer(() -> mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Event.class)
+                        .insert(remaining.get())
+                        .execute())
+                .then()
+                .onErrorResume(error -> {
+                    List<BulkWriteError> writeErrors = writeErrorsOf(error);
+                    if (writeErrors == null) {
+                        return Mono.error(error);
+                    }
+                    remaining.set(retryable(remaining.get(), writeErrors, error, rejected));
+                    return remaining.get().isEmpty() ? Mono.empty() : Mono.error(error);
+                })
+                .retryWhen(Retry.backoff(persistenceProperties.getMaxRetries(), persistenceProperties.getRetryBackoff())
+                        .filter(error -> isTransient(error) || writeErrorsOf(error) != null)
+                        .doBeforeRetry(signal -> retries.increment()));
+        return MeterUtils.timed(insert, insertLatency)
+                .doOnSuccess(ignored -> recordPersisted(batch, rejected))
+                .doOnError(error -> {
+                    failures.increment(remaining.get().size());
+                    log.error("Error saving {} of {} events in batch: {}", remaining.get().size(), batch.size(), error.getMessage());
+                })
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> pending.addAndGet(-batch.size()));
+    }
+
+    /**
+     * Записывает размер пакета и задержку до сохранения для документов пакета, принятых базой данных.
+     *
+     * @param batch    пакет событий.
+     * @param rejected события пакета, отвергнутые постоянной ошибкой.
+     */
+    private void recordPersisted(List<Event> batch, Set<Event> rejected) {
+        int accepted = batch.size() - rejected.size();
+        if (accepted == 0) {
+            return;
+        }
+        batchSizes.record(accepted);
+        long now = System.nanoTime();
+        for (Event event : batch) {
+            if (event.getReceivedNanos() != 0 && !rejected.contains(event)) {
+                persistedLatency.record(now - event.getReceivedNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Извлекает ошибки отдельных документов пакетной вставки. Реактивные пакетные операции
+     * передают MongoBulkWriteException причиной переведенного исключения Spring.
+     *
+     * @param error ошибка пакетной вставки.
+     * @return ошибки документов или null, если ошибка относится ко всему пакету.
+     */
+    private static List<BulkWriteError> writeErrorsOf(Throwable error) {
+        if (error instanceof BulkOperationException bulk && !bulk.getErrors().isEmpty()) {
+            return bulk.getErrors();
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulk) {
+                return bulk.getWriteConcernError() == null && !bulk.getWriteErrors().isEmpty()
+                        ? bulk.getWriteErrors()
+                        : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Отбирает события для повторной попытки: завершившиеся временной ошибкой. Дубликат ключа
+     * означает, что документ уже записан. События с постоянной ошибкой учитываются как несохраненные.
+     *
+     * @param events      события, отправленные в последней попытке.
+     * @param writeErrors ошибки документов последней попытки.
+     * @param error       ошибка пакетной вставки.
+     * @param rejected    события пакета с постоянной ошибкой, пополняемые отвергнутыми в этой попытке.
+     * @return события для повторной попытки.
+     */
+    private List<Event> retryable(List<Event> events, List<BulkWriteError> writeErrors, Throwable error, Set<Event> rejected) {
+        List<Event> retry = new ArrayList<>();
+        int rejectedBefore = rejected.size();
+        for (BulkWriteError writeError : writeErrors) {
+            if (isTransientWriteError(writeError.getCode())) {
+                retry.add(events.get(writeError.getIndex()));
+            } else if (!MongoDbErrorCodes.isDuplicateKeyCode(writeError.getCode())) {
+                rejected.add(events.get(writeError.getIndex()));
+            }
+        }
+        int rejectedNow = rejected.size() - rejectedBefore;
+        if (rejectedNow > 0) {
+            failures.increment(rejectedNow);
+            log.error("Rejected {} of {} events in batch: {}", rejectedNow, events.size(), error.getMessage());
+        }
+        return retry;
+    }
+
+    private static boolean isTransientWriteError(int code) {
+        return TRANSIENT_WRITE_CODES.contains(code) || MongoDbErrorCodes.isDataAccessResourceFailureCode(code);
+    }
+
+    private boolean isTransient(Throwable error) {
+        return error instanceof TransientDataAccessException
+                || error instanceof DataAccessResourceFailureException;
+    }
+
+}
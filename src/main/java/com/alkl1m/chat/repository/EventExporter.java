@@ -0,0 +1,154 @@
+package com.alkl1m.chat.repository;
+
+import com.alkl1m.chat.config.ExportProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.util.JsonUtils;
+import com.alkl1m.chat.util.MeterUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Выгружает историю канала в NDJSON: по одному событию в строке, в порядке идентификаторов.
+ * События читаются курсором MongoDB пакетами заданного размера и сразу пишутся в ответ,
+ * курсор запрашивает следующий пакет только по мере отправки ответа клиенту, поэтому память
+ * на выгрузку не зависит от размера канала. Из документов читаются только поля, которые
+ * попадают в выгрузку. Границы по времени переводятся в границы идентификаторов ObjectId,
+ * которые содержат время создания с точностью до секунды, поэтому выгрузка идет одним
+ * диапазонным сканированием индекса {channelId, _id}. Длительность выгрузки записывается
+ * в таймер chat.export.
+ *
+ * @author AlKl1M
+ */
+@Component
+@RequiredArgsConstructor
+public class EventExporter {
+
+    private static final String[] EXPORTED_FIELDS = {"channelId", "type", "message", "nickname", "filename"};
+    private static final long MAX_OBJECT_ID_SECONDS = 0xFFFFFFFFL;
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ExportProperties exportProperties;
+    private final JsonUtils jsonUtils;
+    private final MeterRegistry meterRegistry;
+
+    private Counter exportedEvents;
+    private MeterUtils.OutcomeTimers exportLatency;
+
+    /**
+     * Регистрирует метрики выгрузки.
+     */
+    @PostConstruct
+    public void start() {
+        exportedEvents = Counter.builder("chat.export.events")
+                .description("Events written to history exports")
+                .register(meterRegistry);
+        exportLatency = MeterUtils.outcomeTimers(meterRegistry, "chat.export", "Time to stream a channel history export");
+    }
+
+    /**
+     * Записывает в ответ выгрузку событий канала за период.
+     *
+     * @param channelId идентификатор канала.
+     * @param from      начало периода включительно или null.
+     * @param to        конец периода не включительно или null.
+     * @param gzip      сжимать ли выгрузку.
+     * @param response  ответ, в который пишется выгрузка.
+     * @return Mono, представляющее завершение записи ответа.
+     */
+    public Mono<Void> export(String channelId, Instant from, Instant to, boolean gzip, ServerHttpResponse response) {
+        HttpHeaders headers = response.getHeaders();
+        headers.setContentType(gzip ? GZIP : MediaType.APPLICATION_NDJSON);
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(channelId + (gzip ? ".ndjson.gz" : ".ndjson"), StandardCharsets.UTF_8)
+                .build());
+        return MeterUtils.timed(response.writeWith(encode(find(channelId, from, to), gzip, response.bufferFactory())), exportLatency);
+    }
+
+    /**
+     * Читает события канала за период курсором с проекцией.
+     *
+     * @param channelId идентификатор канала.
+     * @param from      начало периода включительно или null.
+     * @param to        конец периода не включительно или null.
+     * @return поток событий в порядке идентификаторов.
+     */
+    private Flux<Event> find(String channelId, Instant from, Instant to) {
+        Criteria criteria = where("channelId").is(channelId);
+        if (from != null || to != null) {
+            Criteria id = criteria.and("_id");
+            if (from != null) {
+                id.gte(objectIdAt(from));
+            }
+            if (to != null) {
+                id.lt(objectIdAt(to));
+            }
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .cursorBatchSize(exportProperties.getBatchSize());
+        query.fields().include(EXPORTED_FIELDS);
+        return mongoTemplate.find(query, Event.class);
+    }
+
+    /**
+     * Кодирует события в NDJSON фрагментами заданного размера.
+     *
+     * @param events        поток событий.
+     * @param gzip          сжимать ли выгрузку.
+     * @param bufferFactory фабрика буферов ответа.
+     * @return поток фрагментов ответа.
+     */
+    private Flux<DataBuffer> encode(Flux<Event> events, boolean gzip, DataBufferFactory bufferFactory) {
+        int chunkSize = (int) exportProperties.getChunkSize().toBytes();
+        return Flux.using(
+                () -> new NdjsonChunks(jsonUtils, chunkSize, gzip),
+                chunks -> events
+                        .<byte[]>handle((event, sink) -> {
+                            exportedEvents.increment();
+                            byte[] chunk = chunks.append(event);
+                            if (chunk != null) {
+                                sink.next(chunk);
+                            }
+                        })
+                        .concatWith(Mono.fromCallable(chunks::finish))
+                        .filter(chunk -> chunk.length > 0)
+                        .map(bufferFactory::wrap),
+                NdjsonChunks::close);
+    }
+
+    /**
+     * Возвращает наименьший идентификатор ObjectId, созданный в указанную секунду.
+     * Моменты вне диапазона времени ObjectId приводятся к его границам.
+     *
+     * @param instant момент времени.
+     * @return граница диапазона идентификаторов.
+     */
+    static ObjectId objectIdAt(Instant instant) {
+        long seconds = Math.clamp(instant.getEpochSecond(), 0, MAX_OBJECT_ID_SECONDS);
+        return new ObjectId(String.format("%08x%016x", seconds, 0));
+    }
+
+}
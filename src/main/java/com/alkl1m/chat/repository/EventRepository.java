@@ -1,6 +1,8 @@
 package com.alkl1m.chat.repository;
 
 import com.alkl1m.chat.entity.Event;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -10,4 +12,10 @@ public interface EventRepository extends ReactiveMongoRepository<Event, String>
 
     Flux<Event> findByChannelId(String channelId);
 
+    Flux<Event> findByChannelIdOrderByIdDesc(String channelId, Limit limit);
+
+    Flux<Event> findByChannelIdAndIdLessThanOrderByIdDesc(String channelId, ObjectId before, Limit limit);
+
+    Flux<Event> findByChannelIdAndIdGreaterThanOrderByIdAsc(String channelId, ObjectId after, Limit limit);
+
 }
@@ -0,0 +1,98 @@
+package com.alkl1m.chat.repository;
+
+import com.alkl1m.chat.util.JsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кодирует поток объектов в NDJSON, по желанию сжатый gzip, и нарезает результат на фрагменты
+ * примерно одинакового размера. В памяти держится только текущий фрагмент, поэтому
+ * объем выгрузки не влияет на занимаемую память. Экземпляр обслуживает одну выгрузку
+ * и должен быть закрыт, чтобы освободить память zlib.
+ *
+ * @author AlKl1M
+ */
+final class NdjsonChunks implements Closeable {
+
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+    private final JsonUtils jsonUtils;
+    private final int chunkSize;
+    private final ByteArrayOutputStream chunk;
+    private final OutputStream output;
+
+    /**
+     * Создает кодировщик одной выгрузки.
+     *
+     * @param jsonUtils утилита сериализации JSON.
+     * @param chunkSize размер фрагмента в байтах, после которого он отдается.
+     * @param gzip      сжимать ли выгрузку.
+     */
+    NdjsonChunks(JsonUtils jsonUtils, int chunkSize, boolean gzip) {
+        this.jsonUtils = jsonUtils;
+        this.chunkSize = chunkSize;
+        this.chunk = new ByteArrayOutputStream(chunkSize + GZIP_BUFFER_SIZE);
+        try {
+            this.output = gzip ? new GZIPOutputStream(chunk, GZIP_BUFFER_SIZE) : chunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Дописывает объект строкой NDJSON.
+     *
+     * @param value объект.
+     * @return заполненный фрагмент или null, если фрагмент еще не набран.
+     */
+    byte[] append(Object value) {
+        jsonUtils.writeJSON(value, output);
+        write('\n');
+        return chunk.size() >= chunkSize ? drain() : null;
+    }
+
+    /**
+     * Завершает выгрузку, дописывая в сжатый поток остаток данных и контрольную сумму gzip.
+     *
+     * @return последний фрагмент, возможно пустой.
+     */
+    byte[] finish() {
+        if (output instanceof GZIPOutputStream gzip) {
+            try {
+                gzip.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return drain();
+    }
+
+    @Override
+    public void close() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(int b) {
+        try {
+            output.write(b);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] drain() {
+        byte[] bytes = chunk.toByteArray();
+        chunk.reset();
+        return bytes;
+    }
+
+}
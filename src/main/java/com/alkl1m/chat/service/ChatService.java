@@ -1,24 +1,42 @@
 package com.alkl1m.chat.service;
 
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.channel.PresenceSnapshot;
 import com.alkl1m.chat.entity.Event;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.time.Instant;
+
 /**
  * @author AlKl1M
  */
 public interface ChatService {
 
-    void processEvent(Event event, String channelId);
+    boolean processEvent(Event event, String channelId);
 
     Sinks.Many<Event> getChannelSink(String channelId);
 
+    Flux<EventFrame> getChannelFrames(String channelId);
+
+    Flux<EventFrame> getChannelFrames(String channelId, String lastEventId, Runnable onReplayTruncated);
+
+    PresenceSnapshot getPresence(String channelId, boolean includeMembers);
+
     Flux<Event> getMessagesByChannelId(String channelId);
 
-    void handleFileMessage(Event event);
+    Flux<Event> getMessagesByChannelId(String channelId, String before, String after, Integer limit);
+
+    void handleFileMessage(Event event, Runnable onFailure);
+
+    Mono<Event> uploadFile(String channelId, String nickname, String filename, MediaType contentType, Flux<DataBuffer> content);
 
     Mono<Void> downloadFileById(String fileId, ServerWebExchange exchange);
 
+    Mono<Void> exportEvents(String channelId, Instant from, Instant to, boolean gzip, ServerWebExchange exchange);
+
 }
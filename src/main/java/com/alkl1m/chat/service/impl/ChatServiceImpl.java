@@ -1,29 +1,51 @@
 package com.alkl1m.chat.service.impl;
 
+import com.alkl1m.chat.channel.ChannelRegistry;
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.channel.PresenceSnapshot;
+import com.alkl1m.chat.channel.PresenceTracker;
+import com.alkl1m.chat.channel.ShardedDispatcher;
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.config.HistoryProperties;
+import com.alkl1m.chat.config.SessionProperties;
+import com.alkl1m.chat.config.UploadProperties;
 import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.exception.FileTooLargeException;
+import com.alkl1m.chat.exception.InvalidCursorException;
+import com.alkl1m.chat.file.GridFsFileDownloader;
+import com.alkl1m.chat.repository.EventBatchWriter;
+import com.alkl1m.chat.repository.EventExporter;
 import com.alkl1m.chat.repository.EventRepository;
 import com.alkl1m.chat.service.ChatService;
+import com.alkl1m.chat.util.MeterUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
-import org.springframework.http.ContentDisposition;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.time.Instant;
 import java.util.Base64;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -31,60 +53,248 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 public class ChatServiceImpl implements ChatService {
 
     private final EventRepository eventRepository;
+    private final EventBatchWriter eventBatchWriter;
+    private final EventExporter eventExporter;
     private final ReactiveGridFsTemplate gridFsTemplate;
-    private final Map<String, Sinks.Many<Event>> channelSinks = new ConcurrentHashMap<>();
+    private final GridFsFileDownloader fileDownloader;
+    private final ChannelRegistry channelRegistry;
+    private final PresenceTracker presenceTracker;
+    private final ShardedDispatcher eventDispatcher;
+    private final HistoryProperties historyProperties;
+    private final UploadProperties uploadProperties;
+    private final ClusterProperties clusterProperties;
+    private final SessionProperties sessionProperties;
+    private final MeterRegistry meterRegistry;
+
+    private MeterUtils.OutcomeTimers storeLatency;
+
+    /**
+     * Регистрирует метрики сохранения файлов.
+     */
+    @PostConstruct
+    public void start() {
+        storeLatency = MeterUtils.outcomeTimers(meterRegistry, "chat.file.store", "Time to store a file in GridFS");
+    }
 
     /**
-     * Обрабатывает событие и сохраняет его в базе данных, если тип события - сообщение чата,
-     * пользователь присоединился или покинул. Затем отправляет событие в соответствующий канал.
+     * Обрабатывает событие и ставит его в очередь пакетной записи в базу данных, если тип события -
+     * сообщение чата. Затем отправляет событие в соответствующий канал. События присутствия
+     * не сохраняются: состав канала ведет {@link PresenceTracker} по открытым сессиям.
+     * В режиме кластера подписчикам остальных экземпляров событие доставит поток изменений
+     * коллекции событий, поэтому событие, не принятое в очередь записи, до них не дойдет.
+     * Идентификатор события всегда назначается сервером: возрастающий ObjectId служит курсором истории.
      *
      * @param event     событие для обработки.
      * @param channelId идентификатор канала, с которым связано событие.
+     * @return false, если сообщение не принято в очередь записи и не будет сохранено.
      */
     @Override
-    public void processEvent(Event event, String channelId) {
+    public boolean processEvent(Event event, String channelId) {
         event.setChannelId(channelId);
+        event.setId(new ObjectId().toString());
+        markOrigin(event);
 
-        if (event.getType() == Type.CHAT_MESSAGE
-                || event.getType() == Type.USER_JOINED
-                || event.getType() == Type.USER_LEFT) {
-            eventRepository.save(event)
-                    .doOnError(error -> log.error("Error saving event: {}", error.getMessage()))
-                    .subscribe();
-        }
+        boolean accepted = event.getType() != Type.CHAT_MESSAGE || eventBatchWriter.write(event);
 
-        Sinks.Many<Event> channelSink = channelSinks.get(channelId);
-        if (channelSink != null) {
-            channelSink.tryEmitNext(event).orThrow();
-        }
+        sendEventToChannel(event);
+        return accepted;
     }
 
     /**
-     * Возвращает Sink для указанного канала. Если канал не существует, создается новый Sink.
+     * Возвращает Sink для указанного канала. Если канал не существует, создается новый.
+     * Канал без подписчиков освобождается реестром по истечении времени простоя.
      *
      * @param channelId идентификатор канала.
      * @return Sink для указанного канала.
      */
     @Override
     public Sinks.Many<Event> getChannelSink(String channelId) {
-        return channelSinks.computeIfAbsent(channelId, key ->
-                Sinks.many().multicast().onBackpressureBuffer()
-        );
+        return channelRegistry.getOrCreate(channelId).getSink();
     }
 
     /**
-     * Получает сообщения для указанного канала.
+     * Возвращает общий для всех сессий канала поток закодированных событий.
+     * Каждое событие сериализуется в JSON один раз на канал, а не на каждого подписчика.
+     * Пока на поток есть подписка, канал удерживается в реестре.
      *
      * @param channelId идентификатор канала.
-     * @return поток сообщений (Flux) для указанного канала.
+     * @return поток фреймов (Flux) для указанного канала.
+     */
+    @Override
+    public Flux<EventFrame> getChannelFrames(String channelId) {
+        return channelRegistry.subscribe(channelId);
+    }
+
+    /**
+     * Возвращает поток фреймов канала, начинающийся с событий, пропущенных клиентом после
+     * события lastEventId. Подписка на живые события оформляется до чтения пропущенных,
+     * живые события накапливаются до окончания досылки, а уже досланные события из них
+     * исключаются, поэтому клиент получает каждое событие ровно один раз. Живые события
+     * не сравниваются с lastEventId: идентификатор назначается до отправки в канал, и события
+     * разных потоков могут прийти в канал не в порядке идентификаторов.
+     * Пропущенные события берутся из буфера последних событий канала, а за его пределами - из MongoDB.
+     * Страницы из MongoDB дополняются событиями буфера, которые еще ожидают пакетной записи.
+     * Если клиент пропустил больше событий, чем досылается, досылаются самые старые из них,
+     * и вызывается onReplayTruncated, чтобы клиент узнал о пропуске и загрузил остальное из истории.
+     *
+     * @param channelId         идентификатор канала.
+     * @param lastEventId       идентификатор последнего полученного клиентом события или null.
+     * @param onReplayTruncated действие, вызываемое, если досылка ограничена лимитом.
+     * @return поток фреймов (Flux) для указанного канала.
+     */
+    @Override
+    public Flux<EventFrame> getChannelFrames(String channelId, String lastEventId, Runnable onReplayTruncated) {
+        if (lastEventId == null || !ObjectId.isValid(lastEventId)) {
+            return getChannelFrames(channelId);
+        }
+
+        return Flux.defer(() -> {
+            Set<String> replayed = new HashSet<>();
+            replayed.add(lastEventId);
+            Flux<ReplayFrame> replay = missedEvents(channelId, lastEventId, onReplayTruncated)
+                    .doOnNext(event -> replayed.add(event.getId()))
+                    .map(event -> new ReplayFrame(channelRegistry.encodeFrame(event), false));
+            Flux<ReplayFrame> live = channelRegistry.subscribe(channelId)
+                    .onBackpressureBuffer(sessionProperties.getReplay().getMaxBuffered())
+                    .map(frame -> new ReplayFrame(frame, true));
+
+            return Flux.mergeSequential(replay, live)
+                    .filter(item -> !item.live() || isNewForClient(item.frame().getEvent(), replayed))
+                    .map(ReplayFrame::frame);
+        });
+    }
+
+    /**
+     * Читает события канала, следующие за указанным, страницами по курсору after. После последней
+     * страницы досылаются события буфера канала новее прочитанных: если страницы читались из MongoDB,
+     * там еще нет событий, ожидающих пакетной записи. Читается на одно событие больше лимита,
+     * чтобы отличить досылку, уложившуюся в лимит, от усеченной.
+     *
+     * @param channelId         идентификатор канала.
+     * @param lastEventId       идентификатор последнего полученного клиентом события.
+     * @param onReplayTruncated действие, вызываемое, если пропущенных событий больше лимита.
+     * @return пропущенные события в хронологическом порядке, не больше лимита досылки.
+     */
+    private Flux<Event> missedEvents(String channelId, String lastEventId, Runnable onReplayTruncated) {
+        int pageSize = historyProperties.getMaxPageSize();
+        int maxEvents = sessionProperties.getReplay().getMaxEvents();
+        AtomicReference<String> lastRead = new AtomicReference<>(lastEventId);
+        return getMessagesByChannelId(channelId, null, lastEventId, pageSize)
+                .collectList()
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : getMessagesByChannelId(channelId, null, page.get(page.size() - 1).getId(), pageSize).collectList())
+                .flatMapIterable(page -> page)
+                .doOnNext(event -> lastRead.set(event.getId()))
+                .concatWith(Flux.defer(() -> Flux.fromIterable(channelRegistry.bufferedAfter(channelId, lastRead.get(), maxEvents + 1))))
+                .take(maxEvents + 1L)
+                .index()
+                .handle((indexed, sink) -> {
+                    if (indexed.getT1() < maxEvents) {
+                        sink.next(indexed.getT2());
+                    } else {
+                        log.warn("Replay for channel {} truncated after {} events", channelId, maxEvents);
+                        onReplayTruncated.run();
+                    }
+                });
+    }
+
+    private boolean isNewForClient(Event event, Set<String> replayed) {
+        String id = event.getId();
+        return id == null || !replayed.contains(id);
+    }
+
+    /**
+     * Возвращает состав канала. Число участников ведется счетчиком и не требует обхода состава.
+     *
+     * @param channelId      идентификатор канала.
+     * @param includeMembers нужно ли перечислять участников.
+     * @return число участников канала и, если запрошено, их имена.
+     */
+    @Override
+    public PresenceSnapshot getPresence(String channelId, boolean includeMembers) {
+        return presenceTracker.snapshot(channelId, includeMembers);
+    }
+
+    /**
+     * Получает последнюю страницу сообщений для указанного канала.
+     *
+     * @param channelId идентификатор канала.
+     * @return поток сообщений (Flux) для указанного канала в хронологическом порядке.
      */
     @Override
     public Flux<Event> getMessagesByChannelId(String channelId) {
-        return eventRepository.findByChannelId(channelId);
+        return getMessagesByChannelId(channelId, null, null, null);
+    }
+
+    /**
+     * Получает страницу сообщений канала по курсору. Без курсора возвращается последняя страница,
+     * с курсором before - страница сообщений, предшествующих указанному, с курсором after - следующих за ним.
+     * Свежие страницы отдаются из буфера последних событий канала, остальные читаются
+     * одним диапазонным сканированием индекса {channelId, _id}.
+     *
+     * @param channelId идентификатор канала.
+     * @param before    идентификатор события, до которого нужно вернуть сообщения, или null.
+     * @param after     идентификатор события, после которого нужно вернуть сообщения, или null.
+     * @param limit     запрошенный размер страницы или null для размера по умолчанию.
+     * @return поток сообщений (Flux) страницы в хронологическом порядке.
+     */
+    @Override
+    public Flux<Event> getMessagesByChannelId(String channelId, String before, String after, Integer limit) {
+        if (before != null && after != null) {
+            return Flux.error(new InvalidCursorException("Only one of 'before' and 'after' cursors can be set"));
+        }
+        if (!isValidCursor(before) || !isValidCursor(after)) {
+            return Flux.error(new InvalidCursorException("Cursor must be an event id"));
+        }
+
+        int size = resolvePageSize(limit);
+        Optional<List<Event>> recent = channelRegistry.recentPage(channelId, before, after, size);
+        if (recent.isPresent()) {
+            return Flux.fromIterable(recent.get());
+        }
+
+        Limit pageSize = Limit.of(size);
+        if (after != null) {
+            return eventRepository.findByChannelIdAndIdGreaterThanOrderByIdAsc(channelId, new ObjectId(after), pageSize);
+        }
+
+        Flux<Event> newestFirst = before != null
+                ? eventRepository.findByChannelIdAndIdLessThanOrderByIdDesc(channelId, new ObjectId(before), pageSize)
+                : eventRepository.findByChannelIdOrderByIdDesc(channelId, pageSize);
+        return newestFirst.collectList()
+                .flatMapIterable(events -> {
+                    Collections.reverse(events);
+                    return events;
+                });
     }
 
     /**
-     * Обрабатывает запрос на скачивание файла по идентификатору.
+     * Проверяет, что курсор отсутствует или является идентификатором события.
+     *
+     * @param cursor курсор из запроса.
+     * @return true, если курсор можно использовать в запросе.
+     */
+    private boolean isValidCursor(String cursor) {
+        return cursor == null || ObjectId.isValid(cursor);
+    }
+
+    /**
+     * Ограничивает запрошенный размер страницы настройками истории.
+     *
+     * @param limit запрошенный размер страницы или null.
+     * @return размер страницы в допустимых пределах.
+     */
+    private int resolvePageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return historyProperties.getPageSize();
+        }
+        return Math.min(limit, historyProperties.getMaxPageSize());
+    }
+
+    /**
+     * Обрабатывает запрос на скачивание файла по идентификатору. Поддерживаются условные
+     * запросы (If-None-Match, If-Modified-Since) и запросы диапазона байтов (Range).
      *
      * @param fileId   идентификатор файла для скачивания.
      * @param exchange объект для обработки запроса на сервере.
@@ -92,40 +302,97 @@ public class ChatServiceImpl implements ChatService {
      */
     @Override
     public Mono<Void> downloadFileById(String fileId, ServerWebExchange exchange) {
-        return gridFsTemplate.findOne(query(where("_id").is(fileId)))
-                .flatMap(gridFsTemplate::getResource)
-                .flatMap(resource -> {
-                    exchange.getResponse().getHeaders().setContentDisposition(
-                            ContentDisposition.builder("attachment")
-                                    .filename(resource.getFilename())
-                                    .build()
-                    );
-                    exchange.getResponse().getHeaders().setContentType(
-                            MediaType.APPLICATION_OCTET_STREAM
-                    );
-                    return exchange.getResponse().writeWith(resource.getDownloadStream());
-                });
+        return fileDownloader.download(fileId, exchange);
     }
 
     /**
-     * Обрабатывает сообщение с файлом, сохраняет его в GridFS и обновляет событие с ссылкой на файл.
+     * Выгружает события канала за период в NDJSON прямо из курсора MongoDB, по желанию со сжатием gzip.
      *
-     * @param event событие, содержащее файл для обработки.
+     * @param channelId идентификатор канала.
+     * @param from      начало периода включительно или null.
+     * @param to        конец периода не включительно или null.
+     * @param gzip      сжимать ли выгрузку.
+     * @param exchange  объект для обработки запроса на сервере.
+     * @return Mono, представляющее завершение выгрузки.
      */
     @Override
-    public void handleFileMessage(Event event) {
-        byte[] fileBytes = decodeBase64FileData(event.getFileData());
-        Flux<DataBuffer> fileContentFlux = wrapFileBytesToDataBuffer(fileBytes);
+    public Mono<Void> exportEvents(String channelId, Instant from, Instant to, boolean gzip, ServerWebExchange exchange) {
+        return eventExporter.export(channelId, from, to, gzip, exchange.getResponse());
+    }
 
-        storeFileInGridFs(fileContentFlux, event.getFilename())
+    /**
+     * Обрабатывает сообщение с файлом, сохраняет его в GridFS и обновляет событие с ссылкой на файл.
+     * Событие рассылается в канал только после сохранения файла и события. При ошибке событие
+     * в канал не попадает, а отправитель получает уведомление через onFailure.
+     *
+     * @param event     событие, содержащее файл для обработки.
+     * @param onFailure действие, уведомляющее отправителя о том, что файл не сохранен.
+     */
+    @Override
+    public void handleFileMessage(Event event, Runnable onFailure) {
+        Mono.fromCallable(() -> decodeBase64FileData(event.getFileData()))
+                .flatMap(fileBytes -> storeFileInGridFs(wrapFileBytesToDataBuffer(fileBytes), event.getFilename()))
                 .doOnSuccess(fileId -> {
                     log.info("Stored file with ID: {}", fileId);
                     updateEventWithFileLink(event, fileId);
                 })
                 .flatMap(fileId -> saveEvent(event))
-                .doOnTerminate(() -> sendEventToChannel(event))
-                .doOnError(error -> log.error("Error storing file: {}", error.getMessage()))
-                .subscribe();
+                .subscribe(this::dispatchEventToChannel, error -> {
+                    log.error("Error storing file: {}", error.getMessage());
+                    onFailure.run();
+                });
+    }
+
+    /**
+     * Сохраняет файл, передаваемый потоком буферов, в GridFS и только после успешного сохранения
+     * объявляет его в канале. Содержимое не собирается в памяти целиком: буферы передаются в GridFS
+     * по мере поступления с учетом обратного давления.
+     *
+     * @param channelId   идентификатор канала, в котором публикуется файл.
+     * @param nickname    имя отправителя.
+     * @param filename    имя файла.
+     * @param contentType тип содержимого файла или null, если он неизвестен.
+     * @param content     поток буферов с содержимым файла.
+     * @return Mono с событием, объявившим файл в канале.
+     */
+    @Override
+    public Mono<Event> uploadFile(String channelId, String nickname, String filename, MediaType contentType, Flux<DataBuffer> content) {
+        String storedContentType = contentType != null ? contentType.toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        return timedStore(gridFsTemplate.store(limitUploadSize(content), filename, storedContentType))
+                .map(ObjectId::toString)
+                .map(fileId -> {
+                    log.info("Stored file with ID: {}", fileId);
+                    Event event = Event.builder()
+                            .channelId(channelId)
+                            .type(Type.FILE_MESSAGE)
+                            .nickname(nickname)
+                            .filename(filename)
+                            .build();
+                    updateEventWithFileLink(event, fileId);
+                    return event;
+                })
+                .flatMap(this::saveEvent)
+                .doOnNext(this::dispatchEventToChannel)
+                .doOnError(error -> log.error("Error storing file: {}", error.getMessage()));
+    }
+
+    /**
+     * Прерывает загрузку, как только объем полученных данных превышает допустимый размер файла.
+     *
+     * @param content поток буферов с содержимым файла.
+     * @return тот же поток, завершающийся ошибкой при превышении размера.
+     */
+    private Flux<DataBuffer> limitUploadSize(Flux<DataBuffer> content) {
+        long maxSize = uploadProperties.getMaxSize().toBytes();
+        AtomicLong received = new AtomicLong();
+
+        return content.doOnNext(buffer -> {
+            if (received.addAndGet(buffer.readableByteCount()) > maxSize) {
+                DataBufferUtils.release(buffer);
+                throw new FileTooLargeException("File exceeds maximum size of " + maxSize + " bytes");
+            }
+        });
     }
 
     /**
@@ -134,7 +401,7 @@ public class ChatServiceImpl implements ChatService {
      * @param base64FileData строка, содержащая данные файла в формате Base64.
      * @return массив байтов, полученный после декодирования.
      */
-    private byte[] decodeBase64FileData(String base64FileData) {
+    static byte[] decodeBase64FileData(String base64FileData) {
         return Base64.getDecoder().decode(base64FileData);
     }
 
@@ -144,7 +411,7 @@ public class ChatServiceImpl implements ChatService {
      * @param fileBytes массив байтов, представляющий содержимое файла.
      * @return DataBuffer, содержащий данные файла.
      */
-    private Flux<DataBuffer> wrapFileBytesToDataBuffer(byte[] fileBytes) {
+    static Flux<DataBuffer> wrapFileBytesToDataBuffer(byte[] fileBytes) {
         DataBuffer dataBuffer = new DefaultDataBufferFactory().wrap(fileBytes);
         return Flux.just(dataBuffer);
     }
@@ -157,12 +424,27 @@ public class ChatServiceImpl implements ChatService {
      * @return Mono, которое завершится идентификатором сохранённого файла.
      */
     private Mono<String> storeFileInGridFs(Flux<DataBuffer> fileContentFlux, String filename) {
-        return gridFsTemplate.store(fileContentFlux, filename)
+        MediaType contentType = MediaTypeFactory.getMediaType(filename)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return timedStore(gridFsTemplate.store(fileContentFlux, filename, contentType.toString()))
                 .map(ObjectId::toString);
     }
 
     /**
-     * Обновляет событие, добавляя ссылку на загруженный файл.
+     * Записывает длительность сохранения файла в GridFS в таймер chat.file.store.
+     *
+     * @param store операция сохранения файла.
+     * @return та же операция с измерением длительности.
+     */
+    private Mono<ObjectId> timedStore(Mono<ObjectId> store) {
+        return MeterUtils.timed(store, storeLatency);
+    }
+
+    /**
+     * Обновляет событие, добавляя ссылку на загруженный файл. Идентификатор файла в GridFS
+     * создается в начале загрузки, поэтому событие получает новый идентификатор в момент
+     * объявления: иначе файл, загруженный дольше других сообщений, оказался бы в истории раньше
+     * них и не попал бы в досылку клиенту, получившему эти сообщения.
      *
      * @param event  событие, которое нужно обновить.
      * @param fileId идентификатор файла в GridFS.
@@ -170,7 +452,9 @@ public class ChatServiceImpl implements ChatService {
     private void updateEventWithFileLink(Event event, String fileId) {
         event.setFileData(null);
         event.setMessage("/api/events/download/" + fileId);
-        event.setId(fileId);
+        event.setFileId(fileId);
+        event.setId(new ObjectId().toString());
+        markOrigin(event);
     }
 
     /**
@@ -185,15 +469,45 @@ public class ChatServiceImpl implements ChatService {
     }
 
     /**
-     * Отправляет обновлённое событие в канал.
+     * Помечает событие идентификатором этого экземпляра в режиме кластера, чтобы экземпляр
+     * не доставил его повторно из потока изменений.
+     *
+     * @param event событие, принятое этим экземпляром.
+     */
+    private void markOrigin(Event event) {
+        if (clusterProperties.isEnabled()) {
+            event.setOrigin(clusterProperties.getNodeId());
+        }
+    }
+
+    /**
+     * Передает событие на отправку подписчикам канала в шард канала. Используется для событий,
+     * объявляемых из потоков GridFS и Netty: отправка в канал может выдерживать паузу между
+     * повторными попытками, и она не должна занимать эти потоки.
      *
      * @param event событие, которое нужно отправить.
      */
-    private void sendEventToChannel(Event event) {
-        Sinks.Many<Event> channelSink = channelSinks.get(event.getChannelId());
-        if (channelSink != null) {
-            channelSink.tryEmitNext(event).orThrow();
+    private void dispatchEventToChannel(Event event) {
+        if (!eventDispatcher.dispatch(event.getChannelId(), () -> sendEventToChannel(event))) {
+            log.warn("Dropped file event for channel {}: shard queue is full", event.getChannelId());
         }
     }
 
+    /**
+     * Отправляет обновлённое событие подписчикам канала на этом экземпляре сразу,
+     * не дожидаясь записи в базу данных и потока изменений. Вызывается в потоке шарда канала.
+     *
+     * @param event событие, которое нужно отправить.
+     */
+    private void sendEventToChannel(Event event) {
+        channelRegistry.find(event.getChannelId())
+                .ifPresent(channel -> channel.emit(event));
+    }
+
+    /**
+     * Фрейм потока досылки с отметкой, получен ли он из живой подписки.
+     */
+    private record ReplayFrame(EventFrame frame, boolean live) {
+    }
+
 }
@@ -0,0 +1,193 @@
+package com.alkl1m.chat.util;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.exception.JsonDeserializationException;
+import com.alkl1m.chat.exception.JsonSerializationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кодирует события в компактный бинарный формат на основе CBOR.
+ * Событие записывается массивом фиксированной длины без имен полей:
+ * {@code [id, typeCode, message, nickname, filename, fileData, fileId]}, где тип передается
+ * небольшим целым кодом {@link Type#getCode()}, а fileId - идентификатор файла в GridFS,
+ * на который ссылается FILE_MESSAGE. Идентификатор канала не передается:
+ * он известен из параметров WebSocket-сессии. Изменения состава канала (PRESENCE) дополняются
+ * тремя полями: {@code [..., joined[], left[], memberCount]}. Декодер принимает и события
+ * клиентов без поля fileId.
+ *
+ * @author AlKl1M
+ */
+@Component
+public class CompactEventCodec {
+
+    private static final int FIELD_COUNT = 7;
+    private static final int PRESENCE_FIELD_COUNT = 10;
+
+    private final CBORFactory factory = new CBORFactory();
+
+    /**
+     * Кодирует событие в компактный бинарный формат.
+     *
+     * @param event событие.
+     * @return закодированное событие.
+     * @throws JsonSerializationException если возникла ошибка при кодировании.
+     */
+    public byte[] encode(Event event) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = factory.createGenerator(output)) {
+            boolean presence = event.getType() == Type.PRESENCE;
+            generator.writeStartArray(event, presence ? PRESENCE_FIELD_COUNT : FIELD_COUNT);
+            generator.writeString(event.getId());
+            if (event.getType() != null) {
+                generator.writeNumber(event.getType().getCode());
+            } else {
+                generator.writeNull();
+            }
+            generator.writeString(event.getMessage());
+            generator.writeString(event.getNickname());
+            generator.writeString(event.getFilename());
+            generator.writeString(event.getFileData());
+            generator.writeString(event.getFileId());
+            if (presence) {
+                writeStrings(generator, event.getJoined());
+                writeStrings(generator, event.getLeft());
+                generator.writeNumber(event.getMemberCount() != null ? event.getMemberCount() : 0);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new JsonSerializationException("Error serializing event to CBOR", e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Декодирует событие из буфера. Буфер не освобождается.
+     *
+     * @param buffer буфер с закодированным событием.
+     * @return событие без идентификатора канала.
+     * @throws JsonDeserializationException если данные не являются событием в компактном формате.
+     */
+    public Event decode(DataBuffer buffer) {
+        try (InputStream input = buffer.asInputStream()) {
+            return decode(factory.createParser(input));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new JsonDeserializationException("Invalid CBOR event", e);
+        }
+    }
+
+    /**
+     * Декодирует событие из массива байтов.
+     *
+     * @param bytes закодированное событие.
+     * @return событие без идентификатора канала.
+     * @throws JsonDeserializationException если данные не являются событием в компактном формате.
+     */
+    public Event decode(byte[] bytes) {
+        try {
+            return decode(factory.createParser(bytes));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new JsonDeserializationException("Invalid CBOR event", e);
+        }
+    }
+
+    private Event decode(JsonParser parser) throws IOException {
+        try (parser) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected CBOR array");
+            }
+            Event event = new Event();
+            event.setId(nextString(parser));
+            event.setType(nextType(parser));
+            event.setMessage(nextString(parser));
+            event.setNickname(nextString(parser));
+            event.setFilename(nextString(parser));
+            event.setFileData(nextString(parser));
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NULL) {
+                event.setFileId(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                token = parser.nextToken();
+            }
+            if (token == JsonToken.START_ARRAY) {
+                event.setJoined(readStrings(parser));
+                event.setLeft(nextStrings(parser));
+                event.setMemberCount(nextInt(parser));
+                token = parser.nextToken();
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected trailing CBOR fields");
+            }
+            return event;
+        }
+    }
+
+    private void writeStrings(JsonGenerator generator, List<String> values) throws IOException {
+        List<String> items = values != null ? values : List.of();
+        generator.writeStartArray(items, items.size());
+        for (String item : items) {
+            generator.writeString(item);
+        }
+        generator.writeEndArray();
+    }
+
+    private List<String> nextStrings(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected CBOR array");
+        }
+        return readStrings(parser);
+    }
+
+    private List<String> readStrings(JsonParser parser) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+            values.add(parser.getText());
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new IOException("Expected CBOR string, got " + token);
+        }
+        return values;
+    }
+
+    private int nextInt(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != JsonToken.VALUE_NUMBER_INT) {
+            throw new IOException("Expected CBOR integer, got " + token);
+        }
+        return parser.getIntValue();
+    }
+
+    private String nextString(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new IOException("Expected CBOR string, got " + token);
+        }
+        return parser.getText();
+    }
+
+    private Type nextType(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_NUMBER_INT) {
+            throw new IOException("Expected CBOR type code, got " + token);
+        }
+        return Type.fromCode(parser.getIntValue());
+    }
+
+}
@@ -2,11 +2,20 @@ package com.alkl1m.chat.util;
 
 import com.alkl1m.chat.exception.JsonDeserializationException;
 import com.alkl1m.chat.exception.JsonSerializationException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author AlKl1M
@@ -14,7 +23,14 @@ import java.io.IOException;
 @Component
 public class JsonUtils {
 
+    /**
+     * Максимальное число символов входных данных, приводимых в сообщении об ошибке.
+     */
+    static final int MAX_ERROR_PREVIEW = 128;
+
     private final ObjectMapper mapper;
+    private final ObjectWriter streamWriter;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
 
     /**
      * Конструктор для инициализации JsonUtils с заданным ObjectMapper.
@@ -23,6 +39,7 @@ public class JsonUtils {
      */
     public JsonUtils(ObjectMapper mapper) {
         this.mapper = mapper;
+        this.streamWriter = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     /**
@@ -40,6 +57,37 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * Преобразует объект в JSON, закодированный в UTF-8, минуя промежуточную строку.
+     *
+     * @param object объект, который необходимо сериализовать в JSON.
+     * @return массив байтов в формате JSON, представляющий объект.
+     * @throws JsonSerializationException если возникла ошибка при сериализации.
+     */
+    public byte[] toJSONBytes(Object object) {
+        try {
+            return mapper.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new JsonSerializationException("Error serializing object to JSON", e);
+        }
+    }
+
+    /**
+     * Записывает объект в JSON, закодированный в UTF-8, в поток. Поток остается открытым,
+     * поэтому в него можно последовательно записать несколько объектов.
+     *
+     * @param object объект, который необходимо сериализовать в JSON.
+     * @param output поток, в который записывается JSON.
+     * @throws JsonSerializationException если возникла ошибка при сериализации или записи.
+     */
+    public void writeJSON(Object object, OutputStream output) {
+        try {
+            streamWriter.writeValue(output, object);
+        } catch (IOException e) {
+            throw new JsonSerializationException("Error serializing object to JSON", e);
+        }
+    }
+
     /**
      * Преобразует строку JSON в объект указанного типа.
      *
@@ -53,8 +101,48 @@ public class JsonUtils {
         try {
             return mapper.readValue(json, valueType);
         } catch (IOException e) {
-            throw new JsonDeserializationException("Invalid JSON format: " + json, e);
+            throw new JsonDeserializationException(errorMessage(json, json.length(), "chars"), e);
+        }
+    }
+
+    /**
+     * Преобразует JSON, закодированный в UTF-8, из буфера в объект указанного типа.
+     * JSON разбирается прямо из байтов буфера, минуя промежуточную строку, заранее
+     * подготовленным для типа ObjectReader. Буфер не освобождается.
+     *
+     * @param buffer    буфер с JSON.
+     * @param valueType тип объекта, в который необходимо преобразовать JSON.
+     * @param <T>       тип объекта, который будет получен из JSON.
+     * @return объект типа T, полученный из буфера.
+     * @throws JsonDeserializationException если данные в буфере имеют неверный формат.
+     */
+    public <T> T toObject(DataBuffer buffer, Class<T> valueType) {
+        ObjectReader reader = readers.computeIfAbsent(valueType, mapper::readerFor);
+        int start = buffer.readPosition();
+        int length = buffer.readableByteCount();
+        try (InputStream input = buffer.asInputStream()) {
+            return reader.readValue(input);
+        } catch (IOException e) {
+            String preview = buffer.toString(start, Math.min(length, MAX_ERROR_PREVIEW), StandardCharsets.UTF_8);
+            throw new JsonDeserializationException(errorMessage(preview, length, "bytes"), e);
+        }
+    }
+
+    /**
+     * Формирует сообщение об ошибке разбора с началом входных данных. Входные данные
+     * обрезаются, чтобы большой или враждебный фрейм не попадал в журнал целиком.
+     *
+     * @param input  входные данные или их начало.
+     * @param length длина входных данных.
+     * @param unit   единица длины входных данных.
+     * @return сообщение об ошибке.
+     */
+    private static String errorMessage(String input, int length, String unit) {
+        if (length <= MAX_ERROR_PREVIEW) {
+            return "Invalid JSON format: " + input;
         }
+        String preview = input.length() > MAX_ERROR_PREVIEW ? input.substring(0, MAX_ERROR_PREVIEW) : input;
+        return "Invalid JSON format (first " + MAX_ERROR_PREVIEW + " of " + length + " " + unit + "): " + preview + "...";
     }
 
 }
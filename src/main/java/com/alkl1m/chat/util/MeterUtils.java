@@ -0,0 +1,83 @@
+package com.alkl1m.chat.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вспомогательные методы для измерения реактивных операций.
+ *
+ * @author AlKl1M
+ */
+public final class MeterUtils {
+
+    private MeterUtils() {
+    }
+
+    /**
+     * Регистрирует таймеры операции для каждого значения тега outcome: success, error и cancelled.
+     *
+     * @param meterRegistry реестр метрик.
+     * @param name          имя таймера.
+     * @param description   описание таймера.
+     * @return зарегистрированные таймеры.
+     */
+    public static OutcomeTimers outcomeTimers(MeterRegistry meterRegistry, String name, String description) {
+        return new OutcomeTimers(
+                register(meterRegistry, name, description, "success"),
+                register(meterRegistry, name, description, "error"),
+                register(meterRegistry, name, description, "cancelled"));
+    }
+
+    /**
+     * Измеряет время от подписки до завершения Mono и записывает его в таймер,
+     * соответствующий сигналу завершения.
+     *
+     * @param mono   измеряемая операция.
+     * @param timers таймеры операции, зарегистрированные {@link #outcomeTimers}.
+     * @param <T>    тип результата операции.
+     * @return Mono, записывающий длительность при каждой подписке.
+     */
+    public static <T> Mono<T> timed(Mono<T> mono, OutcomeTimers timers) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> timers.of(signal).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private static Timer register(MeterRegistry meterRegistry, String name, String description, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Таймеры одной операции с разными значениями тега outcome.
+     *
+     * @param success   таймер успешных завершений.
+     * @param error     таймер завершений с ошибкой.
+     * @param cancelled таймер отмененных операций.
+     */
+    public record OutcomeTimers(Timer success, Timer error, Timer cancelled) {
+
+        /**
+         * Возвращает таймер для сигнала завершения.
+         *
+         * @param signal сигнал завершения.
+         * @return таймер с соответствующим значением тега outcome.
+         */
+        public Timer of(SignalType signal) {
+            return switch (signal) {
+                case ON_COMPLETE -> success;
+                case ON_ERROR -> error;
+                default -> cancelled;
+            };
+        }
+
+    }
+
+}
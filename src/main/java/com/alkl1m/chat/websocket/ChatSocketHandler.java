@@ -1,32 +1,108 @@
 package com.alkl1m.chat.websocket;
 
+import com.alkl1m.chat.channel.PresenceTracker;
+import com.alkl1m.chat.channel.ShardedDispatcher;
+import com.alkl1m.chat.config.TracingProperties;
 import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.entity.Type;
 import com.alkl1m.chat.service.ChatService;
+import com.alkl1m.chat.util.CompactEventCodec;
 import com.alkl1m.chat.util.JsonUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Класс, имплементирующий WebSocketHandler и определяющий способы обработки сессии вебсокета.
  *
  * @author AlKl1M
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class ChatSocketHandler implements WebSocketHandler {
 
     private final ChatService chatService;
     private final JsonUtils jsonUtils;
+    private final CompactEventCodec compactEventCodec;
+    private final OutboundQueueFactory outboundQueueFactory;
+    private final ShardedDispatcher eventDispatcher;
+    private final PresenceTracker presenceTracker;
+    private final HeartbeatMonitor heartbeatMonitor;
+    private final InboundLimiter inboundLimiter;
+    private final MeterRegistry meterRegistry;
+    private final TracingProperties tracingProperties;
+    private final AtomicInteger liveSessions = new AtomicInteger();
+    private final Map<WireProtocol, Counter> inboundFrames = new EnumMap<>(WireProtocol.class);
+    private final Map<WireProtocol, Counter> decodeErrors = new EnumMap<>(WireProtocol.class);
+    private final Map<WireProtocol, Timer> decodeTimes = new EnumMap<>(WireProtocol.class);
+
+    /**
+     * Регистрирует метрики сессий и входящих фреймов. Метрики фреймов размечаются форматом сессии.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("chat.websocket.sessions.live", liveSessions, AtomicInteger::get)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+        for (WireProtocol protocol : WireProtocol.values()) {
+            String tag = protocol.name().toLowerCase(Locale.ROOT);
+            inboundFrames.put(protocol, Counter.builder("chat.websocket.inbound.frames")
+                    .description("Inbound WebSocket frames")
+                    .tag("protocol", tag)
+                    .register(meterRegistry));
+            decodeErrors.put(protocol, Counter.builder("chat.websocket.decode.errors")
+                    .description("Inbound frames that could not be decoded into an event")
+                    .tag("protocol", tag)
+                    .register(meterRegistry));
+            decodeTimes.put(protocol, Timer.builder("chat.websocket.decode")
+                    .description("Time to decode an inbound frame into an event")
+                    .tag("protocol", tag)
+                    .register(meterRegistry));
+        }
+    }
 
     /**
      * Обрабатывает WebSocket-сессию, получая события и отправляя их обратно через WebSocket.
+     * События канала доставляются через собственную ограниченную очередь сессии,
+     * поэтому медленный клиент не задерживает остальных участников канала.
+     * Если клиент передал lastEventId, сначала досылаются пропущенные им события; если их больше
+     * лимита досылки, клиент получает уведомление о пропуске.
+     * Входящие события обрабатываются в потоке шарда канала, а не в потоке Netty, принявшем фрейм.
+     * Формат событий в обе стороны определяется подпротоколом, выбранным при рукопожатии.
+     * Входящие события помечаются моментом получения, по которому замеряется задержка стадий конвейера.
+     * Присутствие пользователя в канале учитывается по открытию и закрытию сессии, поэтому
+     * события входа и выхода, присланные клиентом, игнорируются, как и присланные клиентом уведомления.
+     * События без типа тоже игнорируются: иначе они попали бы в буфер последних событий канала
+     * и отдавались бы как история, которой нет в MongoDB.
+     * Если событие клиента не принято, клиент получает уведомление {@link SessionNotices}.
+     * Сессии периодически отправляется ping; сессия, клиент которой перестал присылать фреймы,
+     * закрывается, и ее подписка на канал освобождается.
+     * Входящие фреймы до декодирования проходят лимиты частоты сессии и канала. Фрейм сверх
+     * лимита отбрасывается, и клиент получает уведомление; после серии отброшенных подряд фреймов
+     * сессия закрывается со статусом 1008. Размер фрейма ограничивается кодеком Netty еще при чтении, а сжатого
+     * сообщения - сразу после распаковки; сессия с сообщением сверх лимита закрывается со статусом 1009.
      *
      * @param session объект WebSocketSession, представляющий текущую WebSocket-сессию.
      * @return Mono<Void> указывающий на завершение обработки сессии.
@@ -34,27 +110,139 @@ public class ChatSocketHandler implements WebSocketHandler {
     @Override
     public Mono<Void> handle(WebSocketSession session) {
         String channelId = extractChannelId(session);
+        String lastEventId = extractQueryParam(session, "lastEventId");
+        String nickname = extractQueryParam(session, "nickname");
+        WireProtocol protocol = WireProtocol.of(session.getHandshakeInfo().getSubProtocol());
 
-        Sinks.Many<Event> channelSink = chatService.getChannelSink(channelId);
+        Heartbeat heartbeat = heartbeatMonitor.attach(session);
+        InboundLimit inboundLimit = inboundLimiter.attach(channelId);
+        SessionNotices notices = new SessionNotices(jsonUtils, channelId);
 
         Flux<Event> inputEvents = session.receive()
-                .map(WebSocketMessage::getPayloadAsText)
-                .map(json -> jsonUtils.toObject(json, Event.class))
+                .doOnNext(message -> heartbeat.onInbound())
+                .filter(message -> message.getType() == WebSocketMessage.Type.TEXT
+                        || message.getType() == WebSocketMessage.Type.BINARY)
+                .concatMap(message -> {
+                    if (inboundLimit.isTooLarge(message)) {
+                        return close(session, CloseStatus.TOO_BIG_TO_PROCESS);
+                    }
+                    if (!inboundLimit.tryAcquire()) {
+                        if (inboundLimit.isRejectLimitReached()) {
+                            return close(session, CloseStatus.POLICY_VIOLATION);
+                        }
+                        notices.send(SessionNotices.RATE_LIMITED);
+                        return Mono.empty();
+                    }
+                    return Mono.just(decode(message, protocol, channelId));
+                })
+                .filter(event -> event.getType() != null && !event.getType().isPresence() && event.getType() != Type.ERROR)
                 .doOnNext(event -> {
                     if (event.getType() == Type.FILE_MESSAGE) {
-                        chatService.handleFileMessage(event);
+                        chatService.handleFileMessage(event, () -> notices.send(SessionNotices.NOT_PERSISTED));
                     } else {
-                        chatService.processEvent(event, channelId);
+                        dispatchEvent(event, channelId, notices);
+                    }
+                })
+                .doOnError(inboundLimit::onReceiveError);
+
+        Flux<WebSocketMessage> outputMessages = Flux.merge(
+                        outboundQueueFactory.queue(chatService.getChannelFrames(channelId, lastEventId,
+                                () -> notices.send(SessionNotices.REPLAY_TRUNCATED)), session),
+                        notices.frames())
+                .map(frame -> protocol == WireProtocol.CBOR
+                        ? frame.toBinaryMessage(session.bufferFactory(), compactEventCodec::encode)
+                        : frame.toMessage(session.bufferFactory()));
+
+        liveSessions.incrementAndGet();
+        if (nickname != null) {
+            presenceTracker.join(channelId, nickname);
+        }
+        return session.send(Flux.merge(outputMessages, heartbeat.pings()))
+                .and(inputEvents.then())
+                .takeUntilOther(heartbeat.reaped())
+                .doFinally(signal -> {
+                    liveSessions.decrementAndGet();
+                    inboundLimit.release();
+                    if (nickname != null) {
+                        presenceTracker.leave(channelId, nickname);
                     }
                 });
+    }
 
-        Flux<WebSocketMessage> outputMessages = channelSink.asFlux()
-                .filter(event -> event.getChannelId().equals(channelId))
-                .map(jsonUtils::toJSON)
-                .map(session::textMessage);
+    /**
+     * Возвращает поддерживаемые подпротоколы, из которых выбирается формат событий сессии.
+     *
+     * @return имена подпротоколов.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return WireProtocol.subProtocols();
+    }
 
-        return session.send(outputMessages)
-                .and(inputEvents.then());
+    /**
+     * Декодирует входящее сообщение в событие согласно формату сессии.
+     * Компактный формат не содержит идентификатора канала, он берется из сессии.
+     * Момент получения задается сервером, значение receivedAt от клиента не принимается.
+     * JSON разбирается прямо из буфера фрейма, без копирования в строку.
+     *
+     * @param message   входящее сообщение.
+     * @param protocol  формат событий сессии.
+     * @param channelId идентификатор канала.
+     * @return событие.
+     */
+    private Event decode(WebSocketMessage message, WireProtocol protocol, String channelId) {
+        inboundFrames.get(protocol).increment();
+        long start = System.nanoTime();
+        long receivedAt = System.currentTimeMillis();
+        try {
+            Event event;
+            if (protocol == WireProtocol.CBOR) {
+                event = compactEventCodec.decode(message.getPayload());
+                event.setChannelId(channelId);
+            } else {
+                event = jsonUtils.toObject(message.getPayload(), Event.class);
+            }
+            decodeTimes.get(protocol).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.setReceivedNanos(start);
+            event.setReceivedAt(tracingProperties.isExposeReceivedAt() ? receivedAt : null);
+            return event;
+        } catch (RuntimeException e) {
+            decodeErrors.get(protocol).increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Закрывает сессию и завершает обработку фрейма без события.
+     *
+     * @param session WebSocket-сессия.
+     * @param status  статус закрытия.
+     * @return Mono без события, завершающееся после отправки фрейма закрытия.
+     */
+    private static Mono<Event> close(WebSocketSession session, CloseStatus status) {
+        return session.close(status)
+                .onErrorComplete()
+                .then(Mono.empty());
+    }
+
+    /**
+     * Передает событие на обработку в шард канала. Если очередь шарда переполнена или сообщение
+     * не принято в очередь записи, событие отбрасывается, и отправитель получает уведомление.
+     *
+     * @param event     полученное событие.
+     * @param channelId идентификатор канала.
+     * @param notices   уведомления сессии отправителя.
+     */
+    private void dispatchEvent(Event event, String channelId, SessionNotices notices) {
+        boolean dispatched = eventDispatcher.dispatch(channelId, () -> {
+            if (!chatService.processEvent(event, channelId)) {
+                notices.send(SessionNotices.NOT_PERSISTED);
+            }
+        });
+        if (!dispatched) {
+            log.warn("Dropped event for channel {}: shard queue is full", channelId);
+            notices.send(SessionNotices.OVERLOADED);
+        }
     }
 
     /**
@@ -64,8 +252,34 @@ public class ChatSocketHandler implements WebSocketHandler {
      * @return строка, представляющая идентификатор канала.
      */
     private String extractChannelId(WebSocketSession session) {
-        return session.getHandshakeInfo().getUri().getQuery()
-                .replaceAll(".*channelId=([^&]+).*", "$1");
+        return extractChannelId(session.getHandshakeInfo().getUri().getQuery());
+    }
+
+    /**
+     * Извлекает channelId из строки запроса. Вынесен отдельно, чтобы разбор
+     * можно было измерить бенчмарком без WebSocket-сессии.
+     *
+     * @param query строка запроса URI рукопожатия.
+     * @return строка, представляющая идентификатор канала.
+     */
+    static String extractChannelId(String query) {
+        return query.replaceAll(".*channelId=([^&]+).*", "$1");
+    }
+
+    /**
+     * Извлекает параметр из строки запроса WebSocket-сессии: идентификатор последнего
+     * полученного клиентом события (lastEventId) или имя пользователя (nickname).
+     *
+     * @param session объект WebSocketSession, представляющий текущую WebSocket-сессию.
+     * @param name    имя параметра.
+     * @return декодированное значение параметра или null, если клиент его не передал.
+     */
+    private String extractQueryParam(WebSocketSession session, String name) {
+        String value = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri())
+                .build()
+                .getQueryParams()
+                .getFirst(name);
+        return value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : null;
     }
 
 }
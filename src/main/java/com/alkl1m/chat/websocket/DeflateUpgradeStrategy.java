@@ -0,0 +1,293 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.Nullable;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.NettyPipeline;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Стратегия рукопожатия Reactor Netty с настраиваемым расширением permessage-deflate.
+ * Встроенное сжатие Reactor Netty не позволяет задать уровень сжатия и порог размера фрейма,
+ * поэтому обработчик расширения устанавливается в конвейер соединения перед рукопожатием
+ * так же, как это делает сам Reactor Netty, но с собственными параметрами.
+ * Вокруг кодировщика расширения ставятся обработчики, которые считают байты до и после
+ * сжатия и время, затраченное на сжатие в потоке событий Netty. За распаковщиком ставится
+ * {@link InboundSizeLimitHandler}, ограничивающий размер входящего сообщения после распаковки
+ * тем же лимитом, что и размер фрейма на проводе.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+public class DeflateUpgradeStrategy extends ReactorNettyRequestUpgradeStrategy {
+
+    private static final String EXTENSION_HANDLER = "chat.wsDeflateHandler";
+    private static final String INPUT_METER = "chat.wsDeflateInput";
+    private static final String OUTPUT_METER = "chat.wsDeflateOutput";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final SessionProperties.Compression compression;
+    private final int minFrameSize;
+    private final int maxMessageSize;
+    private final Counter sessions;
+    private final Counter inputBytes;
+    private final Counter outputBytes;
+    private final Counter skippedFrames;
+    private final Timer compressionTime;
+
+    /**
+     * Создает стратегию и регистрирует метрики сжатия.
+     *
+     * @param compression   настройки сжатия.
+     * @param meterRegistry реестр метрик.
+     * @return стратегия рукопожатия.
+     */
+    public static DeflateUpgradeStrategy create(SessionProperties.Compression compression, MeterRegistry meterRegistry) {
+        return create(compression, meterRegistry, WebsocketServerSpec::builder);
+    }
+
+    /**
+     * Создает стратегию с заданными параметрами WebSocket-соединений и регистрирует метрики сжатия.
+     * Степень сжатия вычисляется по счетчикам созданной стратегии, поэтому ее метрика
+     * регистрируется после конструктора.
+     *
+     * @param compression   настройки сжатия.
+     * @param meterRegistry реестр метрик.
+     * @param specBuilder   поставщик параметров WebSocket-соединений Reactor Netty.
+     * @return стратегия рукопожатия.
+     */
+    public static DeflateUpgradeStrategy create(SessionProperties.Compression compression, MeterRegistry meterRegistry,
+                                                Supplier<WebsocketServerSpec.Builder> specBuilder) {
+        DeflateUpgradeStrategy strategy = new DeflateUpgradeStrategy(compression, meterRegistry, specBuilder);
+        Gauge.builder("chat.websocket.deflate.ratio", strategy, DeflateUpgradeStrategy::compressionRatio)
+                .description("Compressed to uncompressed size ratio of outbound frames")
+                .register(meterRegistry);
+        return strategy;
+    }
+
+    private DeflateUpgradeStrategy(SessionProperties.Compression compression, MeterRegistry meterRegistry,
+                                   Supplier<WebsocketServerSpec.Builder> specBuilder) {
+        super(specBuilder);
+        this.compression = compression;
+        this.maxMessageSize = specBuilder.get().build().maxFramePayloadLength();
+        this.minFrameSize = (int) compression.getMinFrameSize().toBytes();
+        this.sessions = Counter.builder("chat.websocket.deflate.sessions")
+                .description("WebSocket sessions that negotiated permessage-deflate")
+                .register(meterRegistry);
+        this.inputBytes = Counter.builder("chat.websocket.deflate.input")
+                .description("Payload bytes of outbound frames before compression")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        this.outputBytes = Counter.builder("chat.websocket.deflate.output")
+                .description("Payload bytes of outbound frames after compression")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        this.skippedFrames = Counter.builder("chat.websocket.deflate.skipped")
+                .description("Outbound frames sent uncompressed because they are below the minimum size")
+                .register(meterRegistry);
+        this.compressionTime = Timer.builder("chat.websocket.deflate.time")
+                .description("Time spent compressing one outbound frame on the event loop")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Устанавливает обработчик расширения в соединение и выполняет рукопожатие.
+     */
+    @Override
+    public Mono<Void> upgrade(ServerWebExchange exchange, WebSocketHandler handler,
+                              @Nullable String subProtocol, Supplier<HandshakeInfo> handshakeInfoFactory) {
+        HttpServerRequest request = ServerHttpRequestDecorator.getNativeRequest(exchange.getRequest());
+        HttpServerResponse response = ServerHttpResponseDecorator.getNativeResponse(exchange.getResponse());
+        prepare(request, response);
+        return super.upgrade(exchange, handler, subProtocol, handshakeInfoFactory);
+    }
+
+    /**
+     * Добавляет в конвейер соединения обработчик расширения и передает ему заголовки запроса,
+     * чтобы он согласовал параметры сжатия при записи ответа 101.
+     *
+     * @param request  запрос на установку WebSocket-соединения.
+     * @param response ответ, через который выполняется рукопожатие.
+     */
+    void prepare(HttpServerRequest request, HttpServerResponse response) {
+        response.withConnection(connection -> {
+            ChannelPipeline pipeline = connection.channel().pipeline();
+            if (pipeline.get(NettyPipeline.HttpCodec) == null || pipeline.get(EXTENSION_HANDLER) != null) {
+                return;
+            }
+            connection.removeHandler(NettyPipeline.CompressionHandler);
+            DeflateExtensionHandler extensionHandler = new DeflateExtensionHandler(connection);
+            pipeline.addAfter(NettyPipeline.HttpCodec, EXTENSION_HANDLER, extensionHandler);
+            try {
+                extensionHandler.negotiate(pipeline.context(extensionHandler), new DefaultHttpRequest(
+                        HttpVersion.HTTP_1_1, HttpMethod.GET, request.uri(), request.requestHeaders().copy()));
+            } catch (Exception e) {
+                log.warn("Failed to negotiate WebSocket compression: {}", e.getMessage());
+                pipeline.remove(extensionHandler);
+            }
+        });
+    }
+
+    private PerMessageDeflateServerExtensionHandshaker handshaker() {
+        return new PerMessageDeflateServerExtensionHandshaker(
+                compression.getLevel(),
+                ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(),
+                PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE,
+                compression.isAllowServerNoContextTakeover(),
+                compression.isRequestClientNoContextTakeover(),
+                new WebSocketExtensionFilterProvider() {
+                    @Override
+                    public WebSocketExtensionFilter encoderFilter() {
+                        return frame -> frame.content().readableBytes() < minFrameSize;
+                    }
+
+                    @Override
+                    public WebSocketExtensionFilter decoderFilter() {
+                        return WebSocketExtensionFilter.NEVER_SKIP;
+                    }
+                });
+    }
+
+    private double compressionRatio() {
+        double input = inputBytes.count();
+        return input > 0 ? outputBytes.count() / input : 1.0;
+    }
+
+    private static boolean isDataFrame(Object message) {
+        return message instanceof TextWebSocketFrame || message instanceof BinaryWebSocketFrame;
+    }
+
+    /**
+     * Обработчик расширения одного соединения. После успешной записи ответа 101
+     * с согласованным permessage-deflate окружает кодировщик расширения обработчиками метрик.
+     */
+    private final class DeflateExtensionHandler extends WebSocketServerExtensionHandler {
+
+        private final Connection connection;
+
+        private DeflateExtensionHandler(Connection connection) {
+            super(handshaker());
+            this.connection = connection;
+        }
+
+        private void negotiate(ChannelHandlerContext ctx, DefaultHttpRequest request) throws Exception {
+            onHttpRequestChannelRead(ctx, request);
+        }
+
+        @Override
+        protected void onHttpResponseWrite(ChannelHandlerContext ctx, HttpResponse response, ChannelPromise promise) throws Exception {
+            super.onHttpResponseWrite(ctx, response, promise);
+            String extensions = response.headers().get(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS);
+            if (extensions != null && extensions.contains(PERMESSAGE_DEFLATE)) {
+                promise.addListener(future -> {
+                    if (future.isSuccess()) {
+                        installMeters(connection.channel().pipeline());
+                        installSizeLimit(connection.channel().pipeline());
+                    }
+                });
+            }
+        }
+
+        private void installMeters(ChannelPipeline pipeline) {
+            WebSocketExtensionEncoder encoder = pipeline.get(WebSocketExtensionEncoder.class);
+            if (encoder == null) {
+                return;
+            }
+            String encoderName = pipeline.context(encoder).name();
+            CompressionMeter meter = new CompressionMeter();
+            pipeline.addAfter(encoderName, INPUT_METER, meter.input);
+            pipeline.addBefore(encoderName, OUTPUT_METER, meter.output);
+            sessions.increment();
+        }
+
+        private void installSizeLimit(ChannelPipeline pipeline) {
+            WebSocketExtensionDecoder decoder = pipeline.get(WebSocketExtensionDecoder.class);
+            if (decoder != null) {
+                pipeline.addAfter(pipeline.context(decoder).name(), InboundSizeLimitHandler.NAME,
+                        new InboundSizeLimitHandler(maxMessageSize));
+            }
+        }
+
+    }
+
+    /**
+     * Пара обработчиков метрик одного соединения. Исходящие фреймы проходят конвейер
+     * от хвоста к голове, поэтому input видит фрейм до кодировщика, а output - после.
+     * Запись в конвейере выполняется синхронно в потоке событий, и время между обработчиками
+     * равно времени сжатия фрейма.
+     */
+    private final class CompressionMeter {
+
+        private long startNanos;
+        private int pendingBytes;
+
+        private final ChannelOutboundHandlerAdapter input = new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                if (isDataFrame(msg)) {
+                    int size = ((WebSocketFrame) msg).content().readableBytes();
+                    if (size < minFrameSize) {
+                        skippedFrames.increment();
+                    } else {
+                        pendingBytes = size;
+                        startNanos = System.nanoTime();
+                    }
+                }
+                ctx.write(msg, promise);
+            }
+        };
+
+        private final ChannelOutboundHandlerAdapter output = new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                if (pendingBytes > 0 && isDataFrame(msg) && (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0) {
+                    compressionTime.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    inputBytes.increment(pendingBytes);
+                    outputBytes.increment(((WebSocketFrame) msg).content().readableBytes());
+                    pendingBytes = 0;
+                }
+                ctx.write(msg, promise);
+            }
+        };
+
+    }
+
+}
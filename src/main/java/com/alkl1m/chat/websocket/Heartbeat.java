@@ -0,0 +1,99 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Проверка живости одной WebSocket-сессии. Любой входящий фрейм, включая pong,
+ * отмечает клиента живым. С заданным периодом сессии отправляется ping, и если
+ * клиент молчит дольше допустимого, сессия закрывается: полуоткрытое TCP-соединение
+ * исчезнувшего клиента иначе держало бы подписку на канал бесконечно.
+ *
+ * @author AlKl1M
+ */
+@Slf4j
+final class Heartbeat {
+
+    /**
+     * Статус закрытия молчащей сессии из диапазона кодов приложения.
+     */
+    static final CloseStatus IDLE_TIMEOUT = new CloseStatus(4000, "Idle timeout");
+
+    private final HeartbeatMonitor monitor;
+    private final SessionProperties.Heartbeat heartbeat;
+    private final WebSocketSession session;
+    private final long idleTimeoutNanos;
+    private final Sinks.Empty<Void> reaped = Sinks.empty();
+
+    private volatile long lastInboundNanos = System.nanoTime();
+
+    /**
+     * Создает проверку живости сессии.
+     *
+     * @param monitor   монитор, ведущий метрики всех сессий.
+     * @param heartbeat настройки проверки.
+     * @param session   проверяемая сессия.
+     */
+    Heartbeat(HeartbeatMonitor monitor, SessionProperties.Heartbeat heartbeat, WebSocketSession session) {
+        this.monitor = monitor;
+        this.heartbeat = heartbeat;
+        this.session = session;
+        this.idleTimeoutNanos = heartbeat.getIdleTimeout().toNanos();
+    }
+
+    /**
+     * Отмечает, что от клиента пришел фрейм.
+     */
+    void onInbound() {
+        lastInboundNanos = System.nanoTime();
+    }
+
+    /**
+     * Возвращает поток ping-сообщений, который объединяется с исходящими сообщениями сессии.
+     * На каждом шаге сначала проверяется молчание клиента; молчащая сессия закрывается,
+     * и поток завершается.
+     *
+     * @return поток ping-сообщений или пустой бесконечный поток, если проверка выключена.
+     */
+    Flux<WebSocketMessage> pings() {
+        if (!heartbeat.isEnabled()) {
+            return Flux.never();
+        }
+        return Flux.interval(heartbeat.getInterval())
+                .onBackpressureDrop()
+                .handle((tick, sink) -> {
+                    if (System.nanoTime() - lastInboundNanos > idleTimeoutNanos) {
+                        reap();
+                        sink.complete();
+                        return;
+                    }
+                    monitor.onPing();
+                    sink.next(session.pingMessage(factory -> factory.allocateBuffer(0)));
+                });
+    }
+
+    /**
+     * Возвращает сигнал закрытия сессии из-за молчания клиента. Обработчик сессии
+     * прекращает по нему отправку и прием, освобождая подписку на канал, даже если
+     * закрывающий фрейм не может дойти до клиента.
+     *
+     * @return Mono, завершающийся при закрытии молчащей сессии.
+     */
+    Mono<Void> reaped() {
+        return reaped.asMono();
+    }
+
+    private void reap() {
+        log.info("Closing session {}: no frames from client for {}", session.getId(), heartbeat.getIdleTimeout());
+        monitor.onReaped();
+        session.close(IDLE_TIMEOUT).subscribe(null, error -> { });
+        reaped.tryEmitEmpty();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+/**
+ * Создает проверки живости WebSocket-сессий и ведет их общие метрики:
+ * отправленные ping и сессии, закрытые из-за молчания клиента.
+ *
+ * @author AlKl1M
+ */
+@Component
+public class HeartbeatMonitor {
+
+    private final SessionProperties.Heartbeat heartbeat;
+    private final Counter pings;
+    private final Counter reaped;
+
+    /**
+     * Конструктор для инициализации монитора и регистрации метрик.
+     *
+     * @param sessionProperties настройки сессий.
+     * @param meterRegistry     реестр метрик.
+     */
+    public HeartbeatMonitor(SessionProperties sessionProperties, MeterRegistry meterRegistry) {
+        this.heartbeat = sessionProperties.getHeartbeat();
+        this.pings = Counter.builder("chat.websocket.heartbeat.pings")
+                .description("Ping frames sent to clients")
+                .register(meterRegistry);
+        this.reaped = Counter.builder("chat.websocket.sessions.reaped")
+                .description("Sessions closed because the client stopped sending frames")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Создает проверку живости для сессии.
+     *
+     * @param session проверяемая сессия.
+     * @return проверка живости сессии.
+     */
+    Heartbeat attach(WebSocketSession session) {
+        return new Heartbeat(this, heartbeat, session);
+    }
+
+    void onPing() {
+        pings.increment();
+    }
+
+    void onReaped() {
+        reaped.increment();
+    }
+
+}
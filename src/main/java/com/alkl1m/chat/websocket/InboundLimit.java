@@ -0,0 +1,98 @@
+package com.alkl1m.chat.websocket;
+
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+/**
+ * Ограничитель входящих фреймов одной WebSocket-сессии. Сообщение сверх максимального размера
+ * не декодируется, даже если оно прошло проверки конвейера Netty. Фрейм допускается к декодированию,
+ * только если нашелся токен и в корзине сессии, и в общей корзине канала. Фрейм, отвергнутый
+ * лимитом сессии, не расходует токен канала, поэтому один клиент не может исчерпать лимит
+ * канала сверх собственного лимита. Ограничитель считает фреймы, отвергнутые подряд, чтобы
+ * закрыть сессию клиента, который продолжает слать фреймы сверх лимита. Ограничитель
+ * используется только из входящего потока своей сессии.
+ *
+ * @author AlKl1M
+ */
+final class InboundLimit {
+
+    private final InboundLimiter limiter;
+    private final String channelId;
+    private final TokenBucket sessionBucket;
+    private final TokenBucket channelBucket;
+    private final long maxFrameSize;
+    private final int maxRejectedFrames;
+    private int rejectedInRow;
+
+    InboundLimit(InboundLimiter limiter, String channelId, TokenBucket sessionBucket, TokenBucket channelBucket,
+                 long maxFrameSize, int maxRejectedFrames) {
+        this.limiter = limiter;
+        this.channelId = channelId;
+        this.sessionBucket = sessionBucket;
+        this.channelBucket = channelBucket;
+        this.maxFrameSize = maxFrameSize;
+        this.maxRejectedFrames = maxRejectedFrames;
+    }
+
+    /**
+     * Проверяет размер полезной нагрузки сообщения перед декодированием.
+     *
+     * @param message входящее сообщение.
+     * @return true, если сообщение больше максимального размера и сессию нужно закрыть.
+     */
+    boolean isTooLarge(WebSocketMessage message) {
+        if (message.getPayload().readableByteCount() <= maxFrameSize) {
+            return false;
+        }
+        limiter.onFrameTooLarge();
+        return true;
+    }
+
+    /**
+     * Проверяет, можно ли обработать очередной фрейм сессии.
+     *
+     * @return true, если фрейм укладывается в лимиты сессии и канала.
+     */
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (sessionBucket != null && !sessionBucket.tryAcquire(now)) {
+            limiter.onSessionRateRejected();
+            rejectedInRow++;
+            return false;
+        }
+        if (channelBucket != null && !channelBucket.tryAcquire(now)) {
+            limiter.onChannelRateRejected();
+            rejectedInRow++;
+            return false;
+        }
+        rejectedInRow = 0;
+        return true;
+    }
+
+    /**
+     * Проверяет, отброшено ли лимитами частоты подряд столько фреймов, что сессию нужно закрыть.
+     *
+     * @return true, если достигнуто максимальное число отброшенных подряд фреймов.
+     */
+    boolean isRejectLimitReached() {
+        return maxRejectedFrames > 0 && rejectedInRow >= maxRejectedFrames;
+    }
+
+    /**
+     * Учитывает ошибку чтения входящего потока сессии.
+     *
+     * @param error ошибка входящего потока.
+     */
+    void onReceiveError(Throwable error) {
+        limiter.onReceiveError(error);
+    }
+
+    /**
+     * Отключает сессию от корзины канала.
+     */
+    void release() {
+        if (channelBucket != null) {
+            limiter.detach(channelId);
+        }
+    }
+
+}
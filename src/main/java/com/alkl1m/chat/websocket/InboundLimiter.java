@@ -0,0 +1,134 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.CorruptedWebSocketFrameException;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Создает ограничители входящих фреймов WebSocket-сессий, хранит общие корзины токенов
+ * каналов и ведет метрику отклоненных фреймов с причиной отказа. Корзина канала живет,
+ * пока в канале есть хотя бы одна сессия этого экземпляра, поэтому число корзин
+ * не превышает числа каналов с открытыми сессиями.
+ *
+ * @author AlKl1M
+ */
+@Component
+public class InboundLimiter {
+
+    private final SessionProperties.Inbound inbound;
+    private final Map<String, ChannelBucket> channelBuckets = new ConcurrentHashMap<>();
+    private final Counter frameSizeRejected;
+    private final Counter sessionRateRejected;
+    private final Counter channelRateRejected;
+
+    /**
+     * Конструктор для инициализации ограничителя и регистрации метрик.
+     *
+     * @param sessionProperties настройки сессий.
+     * @param meterRegistry     реестр метрик.
+     */
+    public InboundLimiter(SessionProperties sessionProperties, MeterRegistry meterRegistry) {
+        this.inbound = sessionProperties.getInbound();
+        this.frameSizeRejected = rejectedCounter(meterRegistry, "frame_size");
+        this.sessionRateRejected = rejectedCounter(meterRegistry, "session_rate");
+        this.channelRateRejected = rejectedCounter(meterRegistry, "channel_rate");
+    }
+
+    /**
+     * Создает ограничитель сессии и подключает ее к корзине канала.
+     * Ограничитель нужно освободить при закрытии сессии.
+     *
+     * @param channelId идентификатор канала сессии.
+     * @return ограничитель входящих фреймов сессии.
+     */
+    InboundLimit attach(String channelId) {
+        long now = System.nanoTime();
+        TokenBucket sessionBucket = TokenBucket.isEnabled(inbound.getSessionLimit())
+                ? new TokenBucket(inbound.getSessionLimit(), now)
+                : null;
+        TokenBucket channelBucket = TokenBucket.isEnabled(inbound.getChannelLimit())
+                ? channelBuckets.compute(channelId, (key, bucket) -> {
+                    ChannelBucket current = bucket != null ? bucket : new ChannelBucket(new TokenBucket(inbound.getChannelLimit(), now));
+                    current.sessions++;
+                    return current;
+                }).bucket
+                : null;
+        return new InboundLimit(this, channelId, sessionBucket, channelBucket,
+                inbound.getMaxFrameSize().toBytes(), inbound.getMaxRejectedFrames());
+    }
+
+    /**
+     * Отключает сессию от корзины канала и забывает корзину, если сессий в канале не осталось.
+     *
+     * @param channelId идентификатор канала сессии.
+     */
+    void detach(String channelId) {
+        channelBuckets.computeIfPresent(channelId, (key, bucket) -> --bucket.sessions > 0 ? bucket : null);
+    }
+
+    /**
+     * Учитывает ошибку чтения входящего потока сессии. Фрейм или собранное сообщение
+     * сверх максимального размера отвергается в конвейере Netty до декодирования события:
+     * кодеком WebSocket по размеру на проводе или {@link InboundSizeLimitHandler} по размеру
+     * после распаковки. Сессия закрывается со статусом 1009.
+     *
+     * @param error ошибка входящего потока.
+     */
+    void onReceiveError(Throwable error) {
+        if (error instanceof TooLongFrameException
+                || error instanceof CorruptedWebSocketFrameException corrupted
+                && WebSocketCloseStatus.MESSAGE_TOO_BIG.equals(corrupted.closeStatus())) {
+            onFrameTooLarge();
+        }
+    }
+
+    void onFrameTooLarge() {
+        frameSizeRejected.increment();
+    }
+
+    /**
+     * Возвращает число каналов, для которых хранится корзина.
+     *
+     * @return число корзин каналов.
+     */
+    int channelBuckets() {
+        return channelBuckets.size();
+    }
+
+    void onSessionRateRejected() {
+        sessionRateRejected.increment();
+    }
+
+    void onChannelRateRejected() {
+        channelRateRejected.increment();
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chat.websocket.inbound.rejected")
+                .description("Inbound frames rejected before decoding")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Корзина канала и число подключенных к ней сессий. Счетчик меняется только внутри compute.
+     */
+    private static final class ChannelBucket {
+
+        private final TokenBucket bucket;
+        private int sessions;
+
+        private ChannelBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+    }
+
+}
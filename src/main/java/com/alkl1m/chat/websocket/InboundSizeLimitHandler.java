@@ -0,0 +1,73 @@
+package com.alkl1m.chat.websocket;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CorruptedWebSocketFrameException;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Обработчик конвейера Netty, ограничивающий размер входящего сообщения после распаковки
+ * permessage-deflate. Кодек WebSocket проверяет только размер фрейма на проводе, а сжатый фрейм
+ * небольшого размера может распаковаться в десятки мегабайт. Обработчик стоит сразу за
+ * распаковщиком и считает размер сообщения вместе с фрагментами продолжения. Сообщение сверх
+ * лимита не передается дальше по конвейеру: клиенту отправляется закрытие со статусом 1009,
+ * а входящий поток сессии завершается ошибкой. Обработчик хранит состояние соединения,
+ * поэтому создается на каждое соединение.
+ *
+ * @author AlKl1M
+ */
+final class InboundSizeLimitHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * Имя обработчика в конвейере соединения.
+     */
+    static final String NAME = "chat.wsInboundSizeLimit";
+
+    private final int maxMessageSize;
+    private long messageSize;
+    private boolean rejected;
+
+    /**
+     * Создает обработчик одного соединения.
+     *
+     * @param maxMessageSize максимальный размер распакованного сообщения в байтах.
+     */
+    InboundSizeLimitHandler(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (rejected) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame || msg instanceof ContinuationWebSocketFrame) {
+            WebSocketFrame frame = (WebSocketFrame) msg;
+            long previous = frame instanceof ContinuationWebSocketFrame ? messageSize : 0;
+            messageSize = previous + frame.content().readableBytes();
+            if (messageSize > maxMessageSize) {
+                reject(ctx, frame);
+                return;
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private void reject(ChannelHandlerContext ctx, WebSocketFrame frame) {
+        rejected = true;
+        frame.release();
+        ctx.writeAndFlush(new CloseWebSocketFrame(WebSocketCloseStatus.MESSAGE_TOO_BIG))
+                .addListener(ChannelFutureListener.CLOSE);
+        ctx.fireExceptionCaught(new CorruptedWebSocketFrameException(WebSocketCloseStatus.MESSAGE_TOO_BIG,
+                "Max message length of " + maxMessageSize + " has been exceeded after decompression"));
+    }
+
+}
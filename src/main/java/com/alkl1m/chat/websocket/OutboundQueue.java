@@ -0,0 +1,259 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.config.SessionProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченная исходящая очередь одной WebSocket-сессии. Забирает фреймы канала без
+ * ограничения спроса, чтобы общий поток не ждал самого медленного клиента, и хранит
+ * не больше заданного числа фреймов, применяя {@link SlowConsumerPolicy} при переполнении.
+ *
+ * @author AlKl1M
+ */
+final class OutboundQueue {
+
+    private final OutboundQueueFactory factory;
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private final long maxLagNanos;
+    private final Runnable onSlowConsumer;
+    private final LinkedList<EventFrame> frames = new LinkedList<>();
+    private final AtomicInteger drainers = new AtomicInteger();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+
+    private FluxSink<EventFrame> sink;
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    /**
+     * Создает очередь сессии.
+     *
+     * @param factory        фабрика, ведущая метрики всех очередей.
+     * @param outbound       настройки очереди.
+     * @param onSlowConsumer действие, закрывающее сессию медленного клиента.
+     */
+    OutboundQueue(OutboundQueueFactory factory, SessionProperties.Outbound outbound, Runnable onSlowConsumer) {
+        this.factory = factory;
+        this.capacity = outbound.getCapacity();
+        this.policy = outbound.getPolicy();
+        this.maxLagNanos = outbound.getMaxLag().toNanos();
+        this.onSlowConsumer = onSlowConsumer;
+    }
+
+    /**
+     * Подключает очередь к потоку фреймов канала.
+     *
+     * @param upstream поток фреймов канала.
+     * @return поток фреймов, выдаваемый по спросу сессии.
+     */
+    Flux<EventFrame> attach(Flux<EventFrame> upstream) {
+        return Flux.create(emitter -> {
+            sink = emitter;
+            Disposable subscription = upstream.subscribe(this::offer, this::onError, this::onComplete);
+            emitter.onRequest(n -> drain());
+            emitter.onDispose(subscription::dispose);
+        });
+    }
+
+    private void offer(EventFrame frame) {
+        boolean slowConsumer;
+        synchronized (frames) {
+            slowConsumer = enqueue(frame);
+        }
+        if (slowConsumer) {
+            disconnect();
+        } else {
+            drain();
+        }
+    }
+
+    /**
+     * Кладет фрейм в очередь по правилам политики. Изменение состава канала (PRESENCE) несет
+     * только разницу с предыдущим, поэтому такие фреймы не отбрасываются ни при какой политике:
+     * новое изменение объединяется с еще не отправленным на его месте в очереди, и в очереди
+     * остается не больше одного изменения состава. Из-за него очередь может превысить емкость на один фрейм.
+     *
+     * @param frame фрейм канала.
+     * @return true, если клиента следует отключить.
+     */
+    private boolean enqueue(EventFrame frame) {
+        if (isDiff(frame) && mergeQueuedDiff(frame)) {
+            return policy == SlowConsumerPolicy.DISCONNECT && lagOf(frames.peekFirst()) > maxLagNanos;
+        }
+        if (frames.size() >= capacity) {
+            if (policy == SlowConsumerPolicy.DISCONNECT) {
+                return true;
+            }
+            if (policy == SlowConsumerPolicy.DROP_NEWEST) {
+                if (!isDiff(frame)) {
+                    factory.onDropped();
+                    return false;
+                }
+            } else if (evictOldest()) {
+                factory.onDropped();
+            }
+        }
+        frames.offerLast(frame);
+        return policy == SlowConsumerPolicy.DISCONNECT && lagOf(frames.peekFirst()) > maxLagNanos;
+    }
+
+    /**
+     * Объединяет новое изменение состава канала с изменением, ожидающим отправки. Объединенный фрейм
+     * занимает место ожидающего и наследует момент его создания, чтобы задержка очереди не занижалась.
+     *
+     * @param frame новое изменение состава.
+     * @return true, если в очереди было изменение и новое объединено с ним.
+     */
+    private boolean mergeQueuedDiff(EventFrame frame) {
+        ListIterator<EventFrame> iterator = frames.listIterator();
+        while (iterator.hasNext()) {
+            EventFrame queued = iterator.next();
+            if (isDiff(queued)) {
+                iterator.set(factory.encode(mergeDiffs(queued.getEvent(), frame.getEvent()), queued.getCreatedNanos()));
+                factory.onConflated();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Объединяет два последовательных изменения состава канала. Вход и выход одного
+     * пользователя в разных изменениях взаимно погашаются, число участников берется из нового.
+     *
+     * @param older более раннее изменение.
+     * @param newer более позднее изменение.
+     * @return изменение, равносильное применению обоих по порядку.
+     */
+    static Event mergeDiffs(Event older, Event newer) {
+        Set<String> joined = new LinkedHashSet<>(nullToEmpty(older.getJoined()));
+        Set<String> left = new LinkedHashSet<>(nullToEmpty(older.getLeft()));
+        for (String nickname : nullToEmpty(newer.getLeft())) {
+            if (!joined.remove(nickname)) {
+                left.add(nickname);
+            }
+        }
+        for (String nickname : nullToEmpty(newer.getJoined())) {
+            if (!left.remove(nickname)) {
+                joined.add(nickname);
+            }
+        }
+        return Event.builder()
+                .channelId(newer.getChannelId())
+                .type(Type.PRESENCE)
+                .joined(new ArrayList<>(joined))
+                .left(new ArrayList<>(left))
+                .memberCount(newer.getMemberCount())
+                .build();
+    }
+
+    /**
+     * Освобождает место, отбрасывая самый старый фрейм, кроме изменения состава канала.
+     *
+     * @return true, если фрейм был отброшен.
+     */
+    private boolean evictOldest() {
+        Iterator<EventFrame> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            if (!isDiff(iterator.next())) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDiff(EventFrame frame) {
+        return frame.getEvent().getType() == Type.PRESENCE;
+    }
+
+    private static List<String> nullToEmpty(List<String> nicknames) {
+        return nicknames != null ? nicknames : List.of();
+    }
+
+    private void drain() {
+        if (drainers.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (sink.requestedFromDownstream() > 0) {
+                EventFrame frame;
+                synchronized (frames) {
+                    frame = frames.pollFirst();
+                }
+                if (frame == null) {
+                    break;
+                }
+                long lag = lagOf(frame);
+                factory.recordLag(lag);
+                if (policy == SlowConsumerPolicy.DISCONNECT && lag > maxLagNanos) {
+                    disconnect();
+                    return;
+                }
+                sink.next(frame);
+            }
+            if (done && isEmpty()) {
+                terminate();
+                return;
+            }
+            missed = drainers.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean isEmpty() {
+        synchronized (frames) {
+            return frames.isEmpty();
+        }
+    }
+
+    private void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    private void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void terminate() {
+        if (error != null) {
+            sink.error(error);
+        } else {
+            sink.complete();
+        }
+    }
+
+    private void disconnect() {
+        if (disconnected.compareAndSet(false, true)) {
+            factory.onDisconnected();
+            synchronized (frames) {
+                frames.clear();
+            }
+            onSlowConsumer.run();
+            sink.complete();
+        }
+    }
+
+    private static long lagOf(EventFrame frame) {
+        return frame == null ? 0 : System.nanoTime() - frame.getCreatedNanos();
+    }
+
+}
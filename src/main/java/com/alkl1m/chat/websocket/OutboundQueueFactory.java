@@ -0,0 +1,93 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.config.SessionProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.util.JsonUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создает исходящие очереди WebSocket-сессий и ведет их общие метрики:
+ * отставание клиентов, отброшенные и схлопнутые события, отключения медленных клиентов.
+ *
+ * @author AlKl1M
+ */
+@Component
+public class OutboundQueueFactory {
+
+    private final SessionProperties sessionProperties;
+    private final JsonUtils jsonUtils;
+    private final Timer lag;
+    private final Counter dropped;
+    private final Counter conflated;
+    private final Counter disconnected;
+
+    /**
+     * Конструктор для инициализации фабрики и регистрации метрик.
+     *
+     * @param sessionProperties настройки сессий.
+     * @param jsonUtils         утилита сериализации объединенных изменений состава канала.
+     * @param meterRegistry     реестр метрик.
+     */
+    public OutboundQueueFactory(SessionProperties sessionProperties, JsonUtils jsonUtils, MeterRegistry meterRegistry) {
+        this.sessionProperties = sessionProperties;
+        this.jsonUtils = jsonUtils;
+        String policy = sessionProperties.getOutbound().getPolicy().name();
+        this.lag = Timer.builder("chat.outbound.lag")
+                .description("Time between encoding a frame and handing it to the session")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.outbound.dropped")
+                .description("Frames dropped from full session queues")
+                .tag("policy", policy)
+                .register(meterRegistry);
+        this.conflated = Counter.builder("chat.outbound.conflated")
+                .description("Presence diffs merged into a newer presence diff")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("chat.outbound.disconnects")
+                .description("Sessions closed for lagging behind their channel")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пропускает фреймы канала через ограниченную очередь сессии. Если политика требует
+     * отключить медленного клиента, сессия закрывается со статусом перегрузки.
+     *
+     * @param frames  поток фреймов канала.
+     * @param session сессия, которой адресованы фреймы.
+     * @return поток фреймов с учетом ограничений очереди.
+     */
+    public Flux<EventFrame> queue(Flux<EventFrame> frames, WebSocketSession session) {
+        OutboundQueue queue = new OutboundQueue(this, sessionProperties.getOutbound(),
+                () -> session.close(CloseStatus.SERVICE_OVERLOAD).subscribe());
+        return queue.attach(frames);
+    }
+
+    EventFrame encode(Event event, long createdNanos) {
+        return new EventFrame(event, jsonUtils.toJSONBytes(event), createdNanos);
+    }
+
+    void recordLag(long lagNanos) {
+        lag.record(lagNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onDropped() {
+        dropped.increment();
+    }
+
+    void onConflated() {
+        conflated.increment();
+    }
+
+    void onDisconnected() {
+        disconnected.increment();
+    }
+
+}
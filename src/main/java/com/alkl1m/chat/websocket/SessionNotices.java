@@ -0,0 +1,80 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Уведомления сервера одной WebSocket-сессии о событиях, которые сервер не принял от этого клиента.
+ * Уведомление - событие с типом {@link Type#ERROR} и причиной в поле message; оно доставляется
+ * только отправителю и не попадает в канал и историю. Уведомления отправляются из разных потоков,
+ * поэтому отправка сериализуется. Если клиент не успевает читать, уведомления отбрасываются.
+ *
+ * @author AlKl1M
+ */
+final class SessionNotices {
+
+    /**
+     * Фрейм отброшен лимитом частоты входящих фреймов.
+     */
+    static final String RATE_LIMITED = "rate_limited";
+
+    /**
+     * Очередь шарда канала переполнена, событие не обработано.
+     */
+    static final String OVERLOADED = "overloaded";
+
+    /**
+     * Очередь записи в базу данных переполнена, сообщение не сохранено
+     * и не доставлено подписчикам других экземпляров.
+     */
+    static final String NOT_PERSISTED = "not_persisted";
+
+    /**
+     * Клиент пропустил больше событий, чем досылается при переподключении: досланы самые
+     * старые из них, остальные клиент должен загрузить из истории канала.
+     */
+    static final String REPLAY_TRUNCATED = "replay_truncated";
+
+    private final JsonUtils jsonUtils;
+    private final String channelId;
+    private final Sinks.Many<EventFrame> sink = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Создает уведомления сессии.
+     *
+     * @param jsonUtils утилита сериализации уведомлений.
+     * @param channelId идентификатор канала сессии.
+     */
+    SessionNotices(JsonUtils jsonUtils, String channelId) {
+        this.jsonUtils = jsonUtils;
+        this.channelId = channelId;
+    }
+
+    /**
+     * Отправляет клиенту уведомление об отклоненном событии.
+     *
+     * @param reason причина отказа.
+     */
+    synchronized void send(String reason) {
+        Event event = Event.builder()
+                .channelId(channelId)
+                .type(Type.ERROR)
+                .message(reason)
+                .build();
+        sink.tryEmitNext(new EventFrame(event, jsonUtils.toJSONBytes(event)));
+    }
+
+    /**
+     * Возвращает поток уведомлений, который объединяется с исходящими фреймами сессии.
+     *
+     * @return поток фреймов уведомлений.
+     */
+    Flux<EventFrame> frames() {
+        return sink.asFlux();
+    }
+
+}
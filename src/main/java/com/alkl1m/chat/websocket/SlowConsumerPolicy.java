@@ -0,0 +1,27 @@
+package com.alkl1m.chat.websocket;
+
+/**
+ * Поведение исходящей очереди сессии, когда клиент не успевает читать события канала.
+ * Изменения состава канала (PRESENCE) при любой политике не отбрасываются, а объединяются
+ * с изменением, еще ожидающим отправки.
+ *
+ * @author AlKl1M
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * Отбрасывать самые старые события из заполненной очереди.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Отбрасывать новые события, пока очередь заполнена.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Закрывать сессию, если очередь заполнена или клиент отстал больше допустимого.
+     */
+    DISCONNECT
+
+}
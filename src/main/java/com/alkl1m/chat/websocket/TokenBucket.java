@@ -0,0 +1,68 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Корзина токенов, ограничивающая частоту входящих фреймов. Корзина пополняется
+ * непрерывно по времени System.nanoTime без фонового таймера: недостающие токены
+ * досчитываются при каждой попытке их взять. Корзину канала делят сессии, которые
+ * обслуживаются разными потоками Netty, поэтому методы синхронизированы.
+ *
+ * @author AlKl1M
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Создает полную корзину.
+     *
+     * @param limit параметры корзины.
+     * @param now   текущее время в наносекундах.
+     */
+    TokenBucket(SessionProperties.RateLimit limit, long now) {
+        this.capacity = Math.max(1, limit.getBurst());
+        this.tokensPerNano = limit.getRate() / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Проверяет, задает ли конфигурация лимит.
+     *
+     * @param limit параметры корзины.
+     * @return false, если лимит отключен нулевой частотой.
+     */
+    static boolean isEnabled(SessionProperties.RateLimit limit) {
+        return limit.getRate() > 0;
+    }
+
+    /**
+     * Берет токен, если он есть.
+     *
+     * @param now текущее время в наносекундах.
+     * @return true, если токен взят и фрейм можно обработать.
+     */
+    synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.alkl1m.chat.websocket;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Формат событий в WebSocket-сессии, согласуемый через подпротокол при рукопожатии.
+ * Клиент, не запросивший подпротокол, получает JSON в текстовых фреймах.
+ *
+ * @author AlKl1M
+ */
+public enum WireProtocol {
+
+    /**
+     * События в JSON, текстовые фреймы.
+     */
+    JSON("chat.json.v1"),
+
+    /**
+     * События в компактном CBOR-формате, бинарные фреймы.
+     */
+    CBOR("chat.cbor.v1");
+
+    private static final List<String> SUB_PROTOCOLS = Arrays.stream(values())
+            .map(WireProtocol::getSubProtocol)
+            .toList();
+
+    private final String subProtocol;
+
+    WireProtocol(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    /**
+     * Возвращает имя подпротокола WebSocket для этого формата.
+     *
+     * @return имя подпротокола.
+     */
+    public String getSubProtocol() {
+        return subProtocol;
+    }
+
+    /**
+     * Возвращает имена всех поддерживаемых подпротоколов.
+     *
+     * @return имена подпротоколов.
+     */
+    public static List<String> subProtocols() {
+        return SUB_PROTOCOLS;
+    }
+
+    /**
+     * Определяет формат по подпротоколу, выбранному при рукопожатии.
+     *
+     * @param subProtocol выбранный подпротокол или null.
+     * @return формат сессии, по умолчанию JSON.
+     */
+    public static WireProtocol of(String subProtocol) {
+        for (WireProtocol protocol : values()) {
+            if (protocol.subProtocol.equals(subProtocol)) {
+                return protocol;
+            }
+        }
+        return JSON;
+    }
+
+}
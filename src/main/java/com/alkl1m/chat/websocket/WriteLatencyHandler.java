@@ -0,0 +1,67 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработчик конвейера Netty, замеряющий время от получения события сервером до завершения
+ * записи его фрейма в сокет подписчика. Момент получения берется из буфера фрейма события,
+ * поэтому обработчик не хранит состояния и один экземпляр разделяется всеми соединениями.
+ * Остальные записи, включая HTTP-ответы и управляющие фреймы, проходят без изменений.
+ *
+ * @author AlKl1M
+ */
+@ChannelHandler.Sharable
+public class WriteLatencyHandler extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * Имя обработчика в конвейере соединения.
+     */
+    public static final String NAME = "chat.writeLatency";
+
+    private final Timer written;
+
+    /**
+     * Создает обработчик и регистрирует таймер стадии записи.
+     *
+     * @param meterRegistry реестр метрик.
+     */
+    public WriteLatencyHandler(MeterRegistry meterRegistry) {
+        this.written = Timer.builder("chat.event.latency")
+                .description("Time from receiving an event to reaching a pipeline stage")
+                .tag("stage", "written")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        long receivedNanos = msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame
+                ? EventFrame.receivedNanosOf(((WebSocketFrame) msg).content())
+                : 0;
+        if (receivedNanos == 0) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ChannelPromise tracked = ctx.newPromise();
+        tracked.addListener(future -> {
+            if (future.isSuccess()) {
+                written.record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+                promise.trySuccess();
+            } else {
+                promise.tryFailure(future.cause());
+            }
+        });
+        ctx.write(msg, tracked);
+    }
+
+}
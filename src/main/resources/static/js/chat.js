@@ -1,20 +1,42 @@
 let socket;
 let channelId = "";
 let nickname = "";
+let lastEventId = null;
+const members = new Set();
+let leaving = false;
+let reconnectDelay = 1000;
+
+const MAX_RECONNECT_DELAY = 30000;
 
 function connectToWebSocket(channel, userNickname) {
     channelId = channel;
     nickname = userNickname || "Anonymous";
-    const wsUrl = `/ws?channelId=${channelId}`;
-    socket = new WebSocket(`ws://${window.location.host}${wsUrl}`);
+    lastEventId = findLastRenderedEventId();
+    openSocket();
+}
+
+function openSocket() {
+    const params = new URLSearchParams({channelId, nickname});
+    if (lastEventId) {
+        params.set("lastEventId", lastEventId);
+    }
+    socket = new WebSocket(`ws://${window.location.host}/ws?${params}`);
 
     socket.onopen = () => {
         console.log("Connected to WebSocket");
-        sendUserJoinedEvent();
+        reconnectDelay = 1000;
+        loadPresence();
     };
 
     socket.onmessage = (event) => {
         const message = JSON.parse(event.data);
+        if (message.type === "PRESENCE") {
+            applyPresence(message);
+            return;
+        }
+        if (message.id && (!lastEventId || message.id > lastEventId)) {
+            lastEventId = message.id;
+        }
         displayMessage(message);
     };
 
@@ -24,14 +46,29 @@ function connectToWebSocket(channel, userNickname) {
 
     socket.onclose = () => {
         console.log("Disconnected from WebSocket");
+        if (!leaving) {
+            setTimeout(openSocket, reconnectDelay);
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        }
     };
 }
 
+function findLastRenderedEventId() {
+    const rendered = document.querySelectorAll("#messages li[data-event-id]");
+    return rendered.length ? rendered[rendered.length - 1].dataset.eventId : null;
+}
+
 function displayMessage(event) {
+    document.getElementById("messages").appendChild(createMessageElement(event));
+}
+
+function createMessageElement(event) {
     const {nickname, message, type, filename} = event;
 
-    const messagesList = document.getElementById("messages");
     const messageElement = document.createElement("li");
+    if (event.id) {
+        messageElement.dataset.eventId = event.id;
+    }
 
     if (type === "CHAT_MESSAGE") {
         messageElement.innerHTML = `
@@ -53,7 +90,69 @@ function displayMessage(event) {
         `;
     }
 
-    messagesList.appendChild(messageElement);
+    return messageElement;
+}
+
+function loadPresence() {
+    fetch(`/api/presence/${encodeURIComponent(channelId)}`)
+        .then(response => response.json())
+        .then(presence => {
+            members.clear();
+            presence.members.forEach(member => members.add(member));
+            renderMemberCount(presence.memberCount);
+        })
+        .catch(error => console.error("Failed to load channel members:", error));
+}
+
+function applyPresence(diff) {
+    const joinedMembers = diff.joined || [];
+    const leftMembers = diff.left || [];
+    joinedMembers.forEach(member => members.add(member));
+    leftMembers.forEach(member => members.delete(member));
+    renderMemberCount(diff.memberCount);
+
+    if (joinedMembers.length) {
+        displayPresenceLine(`${joinedMembers.join(", ")} joined the chat.`);
+    }
+    if (leftMembers.length) {
+        displayPresenceLine(`${leftMembers.join(", ")} left the chat.`);
+    }
+    if (members.size !== diff.memberCount) {
+        loadPresence();
+    }
+}
+
+function renderMemberCount(count) {
+    document.getElementById("member-count").textContent = `${count} online`;
+}
+
+function displayPresenceLine(text) {
+    const element = document.createElement("li");
+    element.className = "presence";
+    element.textContent = text;
+    document.getElementById("messages").appendChild(element);
+}
+
+function loadOlderMessages() {
+    const messagesList = document.getElementById("messages");
+    const oldest = messagesList.querySelector("li[data-event-id]");
+    const params = new URLSearchParams();
+    if (oldest) {
+        params.set("before", oldest.dataset.eventId);
+    }
+
+    fetch(`/api/events/${encodeURIComponent(channelId)}?${params}`)
+        .then(response => response.json())
+        .then(events => {
+            if (events.length === 0) {
+                document.getElementById("load-older").style.display = "none";
+                return;
+            }
+            const fragment = document.createDocumentFragment();
+            events.forEach(event => fragment.appendChild(createMessageElement(event)));
+            messagesList.insertBefore(fragment, messagesList.firstChild);
+        })
+        .catch(error => console.error("Failed to load earlier messages:", error));
 }
 
 function sendMessage() {
@@ -79,44 +178,26 @@ function sendMessage() {
     const fileInput = document.getElementById("file-input");
     const file = fileInput.files[0];
     if (file) {
-        const reader = new FileReader();
-        reader.onload = function (event) {
-            const base64Data = event.target.result.split(',')[1];
-
-            const fileEvent = {
-                id: generateId(),
-                channelId,
-                type: "FILE_MESSAGE",
-                nickname,
-                filename: file.name,
-                fileData: base64Data
-            };
-            socket.send(JSON.stringify(fileEvent));
-        };
-        reader.readAsDataURL(file);
+        uploadFile(file);
+        fileInput.value = "";
     }
 }
 
-function sendUserJoinedEvent() {
-    const event = {
-        id: generateId(),
-        channelId,
-        type: "USER_JOINED",
-        nickname,
-        message: `joined the chat.`,
-    };
-    socket.send(JSON.stringify(event));
+function uploadFile(file) {
+    const params = new URLSearchParams({filename: file.name, nickname});
+    fetch(`/api/events/upload/${encodeURIComponent(channelId)}?${params}`, {
+        method: "POST",
+        headers: {"Content-Type": file.type || "application/octet-stream"},
+        body: file
+    }).then(response => {
+        if (!response.ok) {
+            console.error("File upload failed:", response.status);
+        }
+    }).catch(error => console.error("File upload failed:", error));
 }
 
 function leaveChat() {
-    const event = {
-        id: generateId(),
-        channelId,
-        type: "USER_LEFT",
-        nickname,
-        message: `left the chat.`,
-    };
-    socket.send(JSON.stringify(event));
+    leaving = true;
     socket.close();
     window.location.href = "/";
 }
@@ -0,0 +1,141 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.repository.EventRepository;
+import com.alkl1m.chat.service.ChatService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = "chat.cluster.enabled=true")
+@ActiveProfiles("dev")
+@Testcontainers
+@DisplayName("Тестовые сценарии работы ChangeStreamFanout")
+class ChangeStreamFanoutTest {
+
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:latest");
+
+    static {
+        mongoDBContainer.start();
+    }
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+        registry.add("spring.data.mongodb.database", () -> "testDB");
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChangeStreamFanout changeStreamFanout;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        eventRepository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("Режим кластера: событие, записанное другим экземпляром, доставляется локальному подписчику")
+    void testChangeStream_eventInsertedByAnotherNode_deliveredToLocalSubscriber() {
+        List<Event> received = new CopyOnWriteArrayList<>();
+        Disposable subscription = chatService.getChannelFrames("channel1")
+                .subscribe(frame -> received.add(frame.getEvent()));
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> changeStreamFanout.tailedChannels().contains("channel1"));
+
+        Event remote = Event.builder()
+                .id(new ObjectId().toString())
+                .channelId("channel1")
+                .type(Type.CHAT_MESSAGE)
+                .message("From another node")
+                .nickname("user2")
+                .build();
+        eventRepository.insert(remote).block();
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(received)
+                        .extracting(Event::getMessage)
+                        .containsExactly("From another node"));
+        subscription.dispose();
+    }
+
+    @Test
+    @DisplayName("Режим кластера: события каналов, которых нет в реестре, отфильтровываются потоком изменений")
+    void testChangeStream_eventOfForeignChannel_notReceived() {
+        Disposable subscription = chatService.getChannelFrames("channel3")
+                .subscribe();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> changeStreamFanout.tailedChannels().contains("channel3"));
+        double receivedBefore = meterRegistry.get("chat.cluster.received").counter().count();
+
+        eventRepository.insert(Event.builder()
+                .id(new ObjectId().toString())
+                .channelId("foreignChannel")
+                .type(Type.CHAT_MESSAGE)
+                .message("Not for this node")
+                .build()).block();
+        eventRepository.insert(Event.builder()
+                .id(new ObjectId().toString())
+                .channelId("channel3")
+                .type(Type.CHAT_MESSAGE)
+                .message("For this node")
+                .build()).block();
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(meterRegistry.get("chat.cluster.received").counter().count())
+                        .isEqualTo(receivedBefore + 1));
+        await().during(Duration.ofMillis(500)).atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(meterRegistry.get("chat.cluster.received").counter().count())
+                        .isEqualTo(receivedBefore + 1));
+        subscription.dispose();
+    }
+
+    @Test
+    @DisplayName("Режим кластера: событие этого экземпляра доставляется через поток изменений ровно один раз")
+    void testProcessEvent_clusterMode_deliveredOnceThroughChangeStream() {
+        List<Event> received = new CopyOnWriteArrayList<>();
+        Disposable subscription = chatService.getChannelFrames("channel2")
+                .subscribe(frame -> received.add(frame.getEvent()));
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> changeStreamFanout.tailedChannels().contains("channel2"));
+
+        Event local = new Event();
+        local.setType(Type.CHAT_MESSAGE);
+        local.setMessage("From this node");
+        chatService.processEvent(local, "channel2");
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(received).hasSize(1));
+        await().during(Duration.ofMillis(500)).atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(received).hasSize(1));
+        assertThat(received.get(0).getId()).isEqualTo(local.getId());
+        subscription.dispose();
+    }
+
+}
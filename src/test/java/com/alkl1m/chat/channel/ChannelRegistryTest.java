@@ -0,0 +1,165 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.ChannelProperties;
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.config.DispatchProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы ChannelRegistry")
+class ChannelRegistryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ChannelRegistry channelRegistry;
+
+    @BeforeEach
+    void setUp() {
+        ChannelProperties properties = new ChannelProperties();
+        properties.setIdleTimeout(Duration.ZERO);
+        properties.setSweepInterval(Duration.ofHours(1));
+
+        meterRegistry = new SimpleMeterRegistry();
+        channelRegistry = new ChannelRegistry(new JsonUtils(new ObjectMapper()), properties, new ClusterProperties(), meterRegistry);
+        channelRegistry.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channelRegistry.stop();
+    }
+
+    @Test
+    @DisplayName("Освобождение каналов: канал без подписчиков удаляется после простоя")
+    void testEvictIdle_channelWithoutSubscribers_channelEvicted() {
+        channelRegistry.getOrCreate("channel1");
+
+        channelRegistry.evictIdle();
+
+        assertThat(channelRegistry.find("channel1")).isEmpty();
+        assertThat(meterRegistry.get("chat.channels.evictions").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.channels.live").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Освобождение каналов: канал с активной подпиской не удаляется")
+    void testEvictIdle_channelWithSubscriber_channelRetained() {
+        Disposable subscription = channelRegistry.subscribe("channel1").subscribe();
+
+        channelRegistry.evictIdle();
+
+        assertThat(channelRegistry.find("channel1")).isPresent();
+        assertThat(channelRegistry.find("channel1").get().subscriberCount()).isEqualTo(1);
+
+        subscription.dispose();
+        channelRegistry.evictIdle();
+
+        assertThat(channelRegistry.find("channel1")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Освобождение каналов: отправка в вытесненный канал не приводит к ошибке")
+    void testEmit_evictedChannel_eventDropped() {
+        Channel channel = channelRegistry.getOrCreate("channel1");
+
+        channelRegistry.evictIdle();
+        channel.emit(new Event());
+
+        assertThat(channelRegistry.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Отправка событий: события без подписчиков не копятся и не доставляются следующему подписчику")
+    void testEmit_noSubscribers_eventNotReplayedToNextSubscriber() {
+        Channel channel = channelRegistry.getOrCreate("channel1");
+        channelRegistry.subscribe("channel1").subscribe().dispose();
+        for (int i = 0; i < 300; i++) {
+            channel.emit(Event.builder().message("stale").build());
+        }
+
+        List<String> received = new ArrayList<>();
+        Disposable subscription = channelRegistry.subscribe("channel1")
+                .subscribe(frame -> received.add(frame.getEvent().getMessage()));
+        channel.emit(Event.builder().message("fresh").build());
+
+        assertThat(received).containsExactly("fresh");
+        assertThat(meterRegistry.find("chat.emission.retries").counter().count()).isZero();
+        subscription.dispose();
+    }
+
+    @Test
+    @DisplayName("Отправка событий: конкурентные отправители через шард канала доставляют все события без ошибок")
+    void testEmit_concurrentSendersThroughShard_allEventsDelivered() throws InterruptedException {
+        int senders = 8;
+        int eventsPerSender = 5_000;
+        AtomicInteger received = new AtomicInteger();
+        Disposable subscription = channelRegistry.subscribe("channel1")
+                .subscribe(frame -> received.incrementAndGet());
+        Channel channel = channelRegistry.find("channel1").orElseThrow();
+        DispatchProperties dispatchProperties = new DispatchProperties();
+        dispatchProperties.setShards(2);
+        dispatchProperties.setQueueCapacity(senders * eventsPerSender);
+        ShardedDispatcher eventDispatcher = new ShardedDispatcher(dispatchProperties, meterRegistry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < senders; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < eventsPerSender; j++) {
+                    eventDispatcher.dispatch("channel1", () -> channel.emit(new Event()));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+            assertThat(received.get()).isEqualTo(senders * eventsPerSender);
+            assertThat(meterRegistry.get("chat.emission.emitted").counter().count()).isEqualTo(senders * eventsPerSender);
+            assertThat(meterRegistry.get("chat.emission.fanout").timer().count()).isEqualTo(senders * eventsPerSender);
+        });
+        subscription.dispose();
+        eventDispatcher.dispose();
+    }
+
+    @Test
+    @DisplayName("История канала: свежая страница отдается из буфера, отсутствующий канал - промах")
+    void testRecentPage_eventsEmittedIntoChannel_servedFromBuffer() {
+        Channel channel = channelRegistry.getOrCreate("channel1");
+        for (int i = 0; i < 3; i++) {
+            Event event = new Event();
+            event.setId(new ObjectId().toHexString());
+            channel.emit(event);
+        }
+
+        assertThat(channelRegistry.recentPage("channel1", null, null, 2)).hasValueSatisfying(page -> assertThat(page).hasSize(2));
+        assertThat(channelRegistry.recentPage("channel2", null, null, 2)).isEmpty();
+        assertThat(meterRegistry.get("chat.history.cache.hits").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.history.cache.misses").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.history.cache.events").gauge().value()).isEqualTo(3);
+    }
+
+}
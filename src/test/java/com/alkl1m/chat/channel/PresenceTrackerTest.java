@@ -0,0 +1,152 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.ChannelProperties;
+import com.alkl1m.chat.config.ClusterProperties;
+import com.alkl1m.chat.config.DispatchProperties;
+import com.alkl1m.chat.config.PresenceProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы PresenceTracker")
+class PresenceTrackerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ChannelRegistry channelRegistry;
+
+    private ShardedDispatcher eventDispatcher;
+
+    private PresenceTracker presenceTracker;
+
+    private final List<Event> received = new CopyOnWriteArrayList<>();
+
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+
+    private Disposable subscription;
+
+    @BeforeEach
+    void setUp() {
+        ChannelProperties channelProperties = new ChannelProperties();
+        channelProperties.setSweepInterval(Duration.ofHours(1));
+        PresenceProperties presenceProperties = new PresenceProperties();
+        presenceProperties.setFlushInterval(Duration.ofHours(1));
+
+        meterRegistry = new SimpleMeterRegistry();
+        channelRegistry = new ChannelRegistry(new JsonUtils(new ObjectMapper()), channelProperties, new ClusterProperties(), meterRegistry);
+        channelRegistry.start();
+        DispatchProperties dispatchProperties = new DispatchProperties();
+        dispatchProperties.setShards(2);
+        eventDispatcher = new ShardedDispatcher(dispatchProperties, meterRegistry);
+        presenceTracker = new PresenceTracker(channelRegistry, eventDispatcher, presenceProperties, meterRegistry);
+        presenceTracker.start();
+        subscription = channelRegistry.subscribe("channel1")
+                .subscribe(frame -> {
+                    received.add(frame.getEvent());
+                    threads.add(Thread.currentThread().getName());
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+        presenceTracker.stop();
+        eventDispatcher.dispose();
+        channelRegistry.stop();
+    }
+
+    @Test
+    @DisplayName("Присутствие: изменения за период рассылаются одним событием, повторные сессии не меняют состав")
+    void testFlush_severalJoins_singleDiffEmitted() {
+        presenceTracker.join("channel1", "user1");
+        presenceTracker.join("channel1", "user2");
+        presenceTracker.join("channel1", "user2");
+
+        presenceTracker.flush();
+        awaitDispatched();
+
+        assertThat(received).hasSize(1);
+        Event diff = received.get(0);
+        assertThat(diff.getType()).isEqualTo(Type.PRESENCE);
+        assertThat(diff.getJoined()).containsExactly("user1", "user2");
+        assertThat(diff.getLeft()).isEmpty();
+        assertThat(diff.getMemberCount()).isEqualTo(2);
+        assertThat(presenceTracker.memberCount("channel1")).isEqualTo(2);
+        assertThat(presenceTracker.snapshot("channel1", true).members()).containsExactlyInAnyOrder("user1", "user2");
+        assertThat(channelRegistry.recentPage("channel1", null, null, 10)).isEmpty();
+        assertThat(threads).allMatch(thread -> thread.startsWith("chat-shard"));
+    }
+
+    @Test
+    @DisplayName("Присутствие: изменение состава рассылается в порядке шарда после ранее принятых событий канала")
+    void testFlush_afterDispatchedEvent_orderedWithChannelEvents() {
+        presenceTracker.join("channel1", "user1");
+        Event message = Event.builder().channelId("channel1").type(Type.CHAT_MESSAGE).message("hello").build();
+        eventDispatcher.dispatch("channel1", () -> channelRegistry.find("channel1").ifPresent(channel -> channel.emit(message)));
+
+        presenceTracker.flush();
+        awaitDispatched();
+
+        assertThat(received).extracting(Event::getType).containsExactly(Type.CHAT_MESSAGE, Type.PRESENCE);
+    }
+
+    @Test
+    @DisplayName("Присутствие: переподключение в пределах периода погашается и не рассылается")
+    void testFlush_reconnectWithinInterval_nothingEmitted() {
+        presenceTracker.join("channel1", "user1");
+        presenceTracker.flush();
+        awaitDispatched();
+        received.clear();
+
+        presenceTracker.leave("channel1", "user1");
+        presenceTracker.join("channel1", "user1");
+        presenceTracker.flush();
+        awaitDispatched();
+
+        assertThat(received).isEmpty();
+        assertThat(presenceTracker.memberCount("channel1")).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.presence.coalesced").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Присутствие: выход последнего участника рассылается, после чего канал забывается")
+    void testFlush_lastMemberLeft_diffEmittedAndChannelForgotten() {
+        presenceTracker.join("channel1", "user1");
+        presenceTracker.flush();
+        awaitDispatched();
+        received.clear();
+
+        presenceTracker.leave("channel1", "user1");
+        presenceTracker.flush();
+        awaitDispatched();
+
+        assertThat(received).singleElement().satisfies(diff -> {
+            assertThat(diff.getLeft()).containsExactly("user1");
+            assertThat(diff.getMemberCount()).isZero();
+        });
+        assertThat(presenceTracker.snapshot("channel1", true).memberCount()).isZero();
+        assertThat(meterRegistry.get("chat.presence.channels").gauge().value()).isZero();
+    }
+
+    private void awaitDispatched() {
+        CountDownLatch done = new CountDownLatch(1);
+        eventDispatcher.dispatch("channel1", done::countDown);
+        await().atMost(Duration.ofSeconds(5)).until(() -> done.getCount() == 0);
+    }
+
+}
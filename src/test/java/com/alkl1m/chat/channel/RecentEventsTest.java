@@ -0,0 +1,124 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестовые сценарии работы RecentEvents")
+class RecentEventsTest {
+
+    @Test
+    @DisplayName("Буфер последних событий: события, пришедшие не по порядку, хранятся отсортированными")
+    void testAdd_outOfOrderEvents_keptSortedById() {
+        RecentEvents recentEvents = new RecentEvents(10, new RecentEvents.Budget(100));
+        List<Event> events = events(3);
+
+        recentEvents.add(events.get(1));
+        recentEvents.add(events.get(2));
+        recentEvents.add(events.get(0));
+
+        assertThat(recentEvents.before(null, 3)).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    @DisplayName("Буфер последних событий: страницы before и after отдаются из буфера")
+    void testPages_withinCoverage_servedFromBuffer() {
+        RecentEvents recentEvents = new RecentEvents(10, new RecentEvents.Budget(100));
+        List<Event> events = events(6);
+        events.forEach(recentEvents::add);
+
+        assertThat(recentEvents.before(null, 2)).containsExactlyElementsOf(events.subList(4, 6));
+        assertThat(recentEvents.before(events.get(4).getId(), 3)).containsExactlyElementsOf(events.subList(1, 4));
+        assertThat(recentEvents.after(events.get(1).getId(), 2)).containsExactlyElementsOf(events.subList(2, 4));
+        assertThat(recentEvents.after(events.get(5).getId(), 2)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Буфер последних событий: страница, выходящая за границу покрытия, не отдается")
+    void testPages_beyondCoverage_returnsNull() {
+        String beforeBuffer = new ObjectId().toHexString();
+        RecentEvents recentEvents = new RecentEvents(3, new RecentEvents.Budget(100));
+        List<Event> events = events(5);
+        events.forEach(recentEvents::add);
+
+        assertThat(recentEvents.size()).isEqualTo(3);
+        assertThat(recentEvents.before(null, 4)).isNull();
+        assertThat(recentEvents.before(events.get(3).getId(), 2)).isNull();
+        assertThat(recentEvents.after(events.get(0).getId(), 2)).isNull();
+        assertThat(recentEvents.after(beforeBuffer, 2)).isNull();
+        assertThat(recentEvents.after(events.get(1).getId(), 3)).containsExactlyElementsOf(events.subList(2, 5));
+    }
+
+    @Test
+    @DisplayName("Буфер последних событий: события после курсора отдаются и за границей покрытия")
+    void testBuffered_beyondCoverage_returnsBufferedEvents() {
+        String beforeBuffer = new ObjectId().toHexString();
+        RecentEvents recentEvents = new RecentEvents(3, new RecentEvents.Budget(100));
+        List<Event> events = events(5);
+        events.forEach(recentEvents::add);
+
+        assertThat(recentEvents.after(beforeBuffer, 10)).isNull();
+        assertThat(recentEvents.buffered(beforeBuffer, 10)).containsExactlyElementsOf(events.subList(2, 5));
+        assertThat(recentEvents.buffered(events.get(3).getId(), 10)).containsExactlyElementsOf(events.subList(4, 5));
+    }
+
+    @Test
+    @DisplayName("Буфер последних событий: в режиме кластера страницы не отдаются, а запоздавшее событие сохраняется")
+    void testPages_remoteEventArrivesLate_notServedFromBuffer() {
+        String beforeEvents = new ObjectId().toHexString();
+        RecentEvents recentEvents = new RecentEvents(10, new RecentEvents.Budget(100), false);
+        List<Event> events = events(2);
+        Event remote = events.get(0);
+        Event local = events.get(1);
+
+        recentEvents.add(local);
+
+        assertThat(recentEvents.before(null, 1)).isNull();
+        assertThat(recentEvents.after(beforeEvents, 10)).isNull();
+
+        recentEvents.add(remote);
+
+        assertThat(recentEvents.before(null, 2)).isNull();
+        assertThat(recentEvents.after(remote.getId(), 1)).isNull();
+        assertThat(recentEvents.buffered(beforeEvents, 10)).containsExactly(remote, local);
+    }
+
+    @Test
+    @DisplayName("Буфер последних событий: общий лимит ограничивает число событий во всех буферах")
+    void testAdd_budgetExhausted_oldestEventsReplaced() {
+        RecentEvents.Budget budget = new RecentEvents.Budget(4);
+        RecentEvents first = new RecentEvents(10, budget);
+        RecentEvents second = new RecentEvents(10, budget);
+
+        events(3).forEach(first::add);
+        List<Event> secondEvents = events(3);
+        secondEvents.forEach(second::add);
+
+        assertThat(budget.used()).isEqualTo(4);
+        assertThat(first.size()).isEqualTo(3);
+        assertThat(second.before(null, 1)).containsExactly(secondEvents.get(2));
+
+        first.close();
+
+        assertThat(budget.used()).isEqualTo(1);
+    }
+
+    private List<Event> events(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(index -> Event.builder()
+                        .id(new ObjectId().toHexString())
+                        .channelId("channel1")
+                        .type(Type.CHAT_MESSAGE)
+                        .message("Message " + index)
+                        .build())
+                .toList();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.alkl1m.chat.channel;
+
+import com.alkl1m.chat.config.DispatchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестовые сценарии работы ShardedDispatcher")
+class ShardedDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ShardedDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.dispose();
+    }
+
+    @Test
+    @DisplayName("Шардирование: задачи одного канала от разных отправителей выполняются в одном потоке по порядку")
+    void testDispatch_concurrentSenders_singleThreadPerChannelInOrder() throws InterruptedException {
+        dispatcher = new ShardedDispatcher(properties(4, 100_000), meterRegistry);
+        int senders = 4;
+        int tasksPerSender = 2_000;
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<int[]> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(senders * tasksPerSender);
+
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        for (int sender = 0; sender < senders; sender++) {
+            int senderId = sender;
+            executor.submit(() -> {
+                for (int i = 0; i < tasksPerSender; i++) {
+                    int sequence = i;
+                    dispatcher.dispatch("channel1", () -> {
+                        threads.add(Thread.currentThread().getName());
+                        executed.add(new int[]{senderId, sequence});
+                        done.countDown();
+                    });
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).hasSize(1);
+        for (int sender = 0; sender < senders; sender++) {
+            int senderId = sender;
+            assertThat(executed.stream().filter(task -> task[0] == senderId).mapToInt(task -> task[1]))
+                    .isSorted()
+                    .hasSize(tasksPerSender);
+        }
+    }
+
+    @Test
+    @DisplayName("Шардирование: при переполнении очереди шарда задача отклоняется и учитывается в метриках")
+    void testDispatch_queueFull_taskRejected() throws InterruptedException {
+        dispatcher = new ShardedDispatcher(properties(1, 1), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        dispatcher.dispatch("channel1", () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(dispatcher.dispatch("channel1", () -> { })).isTrue();
+        assertThat(meterRegistry.get("chat.dispatch.queue.depth").tag("shard", "0").gauge().value()).isEqualTo(1);
+        assertThat(dispatcher.dispatch("channel1", () -> { })).isFalse();
+        assertThat(meterRegistry.get("chat.dispatch.rejected").counter().count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    private DispatchProperties properties(int shards, int queueCapacity) {
+        DispatchProperties properties = new DispatchProperties();
+        properties.setShards(shards);
+        properties.setQueueCapacity(queueCapacity);
+        return properties;
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
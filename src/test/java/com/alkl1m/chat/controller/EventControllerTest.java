@@ -4,6 +4,9 @@ import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.entity.Type;
 import com.alkl1m.chat.repository.EventRepository;
 import com.alkl1m.chat.service.ChatService;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,6 +16,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -20,8 +26,16 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -142,6 +156,111 @@ class EventControllerTest {
                 });
     }
 
+    @Test
+    @DisplayName("Получение истории событий: без курсора возвращается последняя страница в хронологическом порядке")
+    void getEventHistory_withLimit_ReturnsLatestPage() {
+        List<Event> saved = saveMessages("channel1", 5);
+
+        webTestClient.get().uri("/api/events/channel1?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Event.class)
+                .value(events -> assertThat(events)
+                        .extracting(Event::getId)
+                        .containsExactly(saved.get(3).getId(), saved.get(4).getId()));
+    }
+
+    @Test
+    @DisplayName("Получение истории событий: курсор before возвращает предшествующие сообщения")
+    void getEventHistory_withBeforeCursor_ReturnsOlderPage() {
+        List<Event> saved = saveMessages("channel1", 5);
+
+        webTestClient.get().uri("/api/events/channel1?before=" + saved.get(2).getId() + "&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Event.class)
+                .value(events -> assertThat(events)
+                        .extracting(Event::getId)
+                        .containsExactly(saved.get(0).getId(), saved.get(1).getId()));
+    }
+
+    @Test
+    @DisplayName("Получение истории событий: курсор after возвращает последующие сообщения")
+    void getEventHistory_withAfterCursor_ReturnsNewerPage() {
+        List<Event> saved = saveMessages("channel1", 5);
+
+        webTestClient.get().uri("/api/events/channel1?after=" + saved.get(2).getId() + "&limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Event.class)
+                .value(events -> assertThat(events)
+                        .extracting(Event::getId)
+                        .containsExactly(saved.get(3).getId(), saved.get(4).getId()));
+    }
+
+    @Test
+    @DisplayName("Получение истории событий: некорректный курсор приводит к ошибке запроса")
+    void getEventHistory_withInvalidCursor_ReturnsBadRequest() {
+        webTestClient.get().uri("/api/events/channel1?before=not-an-id")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Выгрузка истории: события канала выгружаются строками NDJSON без данных файлов")
+    void exportEvents_withoutRange_ReturnsChannelEventsAsNdjson() {
+        List<Event> saved = saveMessages("channel1", 3);
+        eventRepository.save(createEvent("channel1", Type.FILE_MESSAGE, "File", "user2", "file.txt", "filedata")).block();
+        saveMessages("channel2", 2);
+
+        byte[] body = webTestClient.get().uri("/api/events/export/channel1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectHeader().value(HttpHeaders.CONTENT_DISPOSITION, value -> assertThat(value).contains("channel1.ndjson"))
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        List<Event> events = parseNdjson(body);
+        assertThat(events).hasSize(4);
+        assertThat(events.subList(0, 3)).extracting(Event::getId)
+                .containsExactly(saved.get(0).getId(), saved.get(1).getId(), saved.get(2).getId());
+        assertThat(events).extracting(Event::getChannelId).containsOnly("channel1");
+        assertThat(events.get(3).getFilename()).isEqualTo("file.txt");
+        assertThat(events.get(3).getFileData()).isNull();
+    }
+
+    @Test
+    @DisplayName("Выгрузка истории: период и сжатие gzip ограничивают и сжимают выгрузку")
+    void exportEvents_withRangeAndGzip_ReturnsCompressedEventsInRange() throws IOException {
+        Instant start = Instant.parse("2024-06-01T00:00:00Z");
+        List<Event> events = IntStream.range(0, 3)
+                .mapToObj(hour -> {
+                    Event event = createEvent("channel1", Type.CHAT_MESSAGE, "Message " + hour, "user1", null, null);
+                    event.setId(new ObjectId(Date.from(start.plus(Duration.ofHours(hour)))).toHexString());
+                    return event;
+                })
+                .toList();
+        eventRepository.saveAll(events).blockLast();
+
+        byte[] body = webTestClient.get()
+                .uri("/api/events/export/channel1?from={from}&to={to}&gzip=true",
+                        start.plus(Duration.ofMinutes(30)), start.plus(Duration.ofHours(2)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/gzip")
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(parseNdjson(input.readAllBytes()))
+                    .extracting(Event::getMessage)
+                    .containsExactly("Message 1");
+        }
+    }
+
     @Test
     @DisplayName("Загрузка файла: проверка успешного ответа при пустых данных файла")
     void testDownloadFile_withEmptyData_ReturnsOkForValidFile() {
@@ -162,9 +281,9 @@ class EventControllerTest {
 
         Event event = createEvent("testChannel", Type.FILE_MESSAGE, "This is a file message.", "user1", "testFile.txt", base64File);
 
-        chatService.handleFileMessage(event);
+        chatService.handleFileMessage(event, () -> { });
 
-        String fileId = event.getId();
+        String fileId = event.getFileId();
 
         webTestClient.get()
                 .uri("/api/events/download/" + fileId)
@@ -172,6 +291,108 @@ class EventControllerTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    @DisplayName("Загрузка файла: файл, переданный потоком, сохраняется и доступен для скачивания")
+    void testUploadFile_withRawBody_fileStoredAndDownloadable() {
+        byte[] content = "Streamed file content".getBytes();
+
+        Event event = webTestClient.post()
+                .uri("/api/events/upload/channel1?filename=streamed.txt&nickname=user1")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(content)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Event.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(event).isNotNull();
+        assertThat(event.getType()).isEqualTo(Type.FILE_MESSAGE);
+        assertThat(event.getFilename()).isEqualTo("streamed.txt");
+
+        webTestClient.get()
+                .uri(event.getMessage())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .isEqualTo(content);
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: запрос диапазона возвращает 206 и только запрошенные байты")
+    void testDownloadFile_withRange_ReturnsPartialContent() {
+        Event event = uploadFile("range.txt", "0123456789".getBytes());
+
+        webTestClient.get()
+                .uri(event.getMessage())
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+                .expectHeader().contentLength(4)
+                .expectHeader().contentType(MediaType.TEXT_PLAIN)
+                .expectBody(byte[].class)
+                .isEqualTo("2345".getBytes());
+
+        webTestClient.get()
+                .uri(event.getMessage())
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */10");
+    }
+
+    @Test
+    @DisplayName("Скачивание файла: повторный запрос с совпадающим ETag возвращает 304 без тела")
+    void testDownloadFile_withMatchingEtag_ReturnsNotModified() {
+        Event event = uploadFile("cached.txt", "Cached content".getBytes());
+
+        String etag = webTestClient.get()
+                .uri(event.getMessage())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .expectHeader().contentLength(14)
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .returnResult(byte[].class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get()
+                .uri(event.getMessage())
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    private Event uploadFile(String filename, byte[] content) {
+        return webTestClient.post()
+                .uri("/api/events/upload/channel1?filename=" + filename + "&nickname=user1")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(content)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Event.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private List<Event> parseNdjson(byte[] body) {
+        JsonUtils jsonUtils = new JsonUtils(new ObjectMapper());
+        return new String(body, StandardCharsets.UTF_8).lines()
+                .map(line -> jsonUtils.toObject(line, Event.class))
+                .toList();
+    }
+
+    private List<Event> saveMessages(String channelId, int count) {
+        List<Event> events = IntStream.rangeClosed(1, count)
+                .mapToObj(index -> createEvent(channelId, Type.CHAT_MESSAGE, "Message " + index, "user1", null, null))
+                .toList();
+        return eventRepository.saveAll(events).collectList().block();
+    }
+
     private Event createEvent(String channelId, Type type, String message, String nickname, String filename, String fileData) {
         return Event.builder()
                 .channelId(channelId)
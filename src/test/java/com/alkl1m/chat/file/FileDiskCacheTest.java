@@ -0,0 +1,225 @@
+package com.alkl1m.chat.file;
+
+import com.alkl1m.chat.config.FileCacheProperties;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы FileDiskCache")
+class FileDiskCacheTest {
+
+    @TempDir
+    Path cacheRoot;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private FileDiskCache fileCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileCacheProperties properties = new FileCacheProperties();
+        properties.setDirectory(cacheRoot);
+        properties.setMaxSize(DataSize.ofBytes(20));
+        properties.setMaxFileSize(DataSize.ofBytes(15));
+
+        meterRegistry = new SimpleMeterRegistry();
+        fileCache = new FileDiskCache(properties, meterRegistry);
+        fileCache.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileCache.stop();
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: файл сохраняется в кэш при первой отдаче без дополнительного чтения GridFS")
+    void testCacheWhileStreaming_fullMiss_singleGridFsRead() throws IOException {
+        GridFSFile file = gridFsFile(10);
+        AtomicInteger reads = new AtomicInteger();
+
+        assertThat(fileCache.acquire(file)).isNull();
+        long streamed = fileCache.cacheWhileStreaming(file, content(10, reads).get())
+                .map(DataBuffer::readableByteCount)
+                .reduce(0L, Long::sum)
+                .block();
+        awaitCached(file);
+        FileDiskCache.Entry second = fileCache.acquire(file);
+
+        assertThat(streamed).isEqualTo(10);
+        assertThat(reads).hasValue(1);
+        assertThat(Files.readAllBytes(second.getPath())).hasSize(10);
+        assertThat(fileCache.lookup(file.getObjectId().toHexString())).isEqualTo(file);
+        assertThat(meterRegistry.get("chat.file-cache.hits").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.file-cache.misses").counter().count()).isEqualTo(1);
+        second.release();
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: одновременные промахи по одному файлу читают GridFS по одному разу на запрос")
+    void testCacheWhileStreaming_concurrentMisses_noExtraGridFsRead() {
+        GridFSFile file = gridFsFile(10);
+        AtomicInteger reads = new AtomicInteger();
+        Sinks.One<DataBuffer> pending = Sinks.one();
+
+        Disposable first = fileCache.cacheWhileStreaming(file, counted(pending.asMono().flux(), reads)).subscribe();
+        for (int i = 0; i < 7; i++) {
+            assertThat(fileCache.acquire(file)).isNull();
+            fileCache.cacheWhileStreaming(file, content(10, reads).get()).blockLast();
+        }
+        pending.tryEmitValue(DefaultDataBufferFactory.sharedInstance.wrap(new byte[10]));
+        awaitCached(file);
+
+        assertThat(reads).hasValue(8);
+        assertThat(fileCache.size()).isEqualTo(1);
+        first.dispose();
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: первый промах по диапазону не читает файл целиком, повторный загружает его в кэш")
+    void testOnRangeMiss_secondMiss_fillsCache() {
+        GridFSFile file = gridFsFile(10);
+        AtomicInteger reads = new AtomicInteger();
+
+        fileCache.onRangeMiss(file, content(10, reads));
+        assertThat(reads).hasValue(0);
+        assertThat(fileCache.lookup(file.getObjectId().toHexString())).isNull();
+
+        fileCache.onRangeMiss(file, content(10, reads));
+        awaitCached(file);
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: прерванная отдача не оставляет копию и снимает резерв места")
+    void testCacheWhileStreaming_cancelled_reservationReleased() {
+        GridFSFile file = gridFsFile(15);
+        Sinks.One<DataBuffer> pending = Sinks.one();
+
+        fileCache.cacheWhileStreaming(file, pending.asMono().flux()).subscribe().dispose();
+
+        assertThat(fileCache.lookup(file.getObjectId().toHexString())).isNull();
+        cache(gridFsFile(15), new AtomicInteger());
+        assertThat(meterRegistry.get("chat.file-cache.size").gauge().value()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: при превышении лимита вытесняется давно не запрашиваемый файл")
+    void testAcquire_overCapacity_leastRecentlyUsedEvicted() {
+        GridFSFile oldest = gridFsFile(8);
+        GridFSFile recent = gridFsFile(8);
+        GridFSFile newest = gridFsFile(8);
+        AtomicInteger reads = new AtomicInteger();
+
+        cache(oldest, reads);
+        cache(recent, reads);
+        fileCache.acquire(oldest).release();
+        cache(newest, reads);
+
+        assertThat(fileCache.lookup(recent.getObjectId().toHexString())).isNull();
+        assertThat(fileCache.lookup(oldest.getObjectId().toHexString())).isNotNull();
+        assertThat(fileCache.lookup(newest.getObjectId().toHexString())).isNotNull();
+        assertThat(meterRegistry.get("chat.file-cache.evictions").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.file-cache.size").gauge().value()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: незавершенная загрузка занимает место в лимите кэша")
+    void testCacheWhileStreaming_fillInProgress_countedTowardMaxSize() {
+        GridFSFile loading = gridFsFile(15);
+        GridFSFile other = gridFsFile(10);
+        AtomicInteger reads = new AtomicInteger();
+        Sinks.One<DataBuffer> pending = Sinks.one();
+
+        fileCache.cacheWhileStreaming(loading, pending.asMono().flux()).subscribe();
+        fileCache.cacheWhileStreaming(other, content(10, reads).get()).blockLast();
+
+        assertThat(reads).hasValue(1);
+        assertThat(fileCache.lookup(other.getObjectId().toHexString())).isNull();
+        pending.tryEmitValue(DefaultDataBufferFactory.sharedInstance.wrap(new byte[15]));
+        awaitCached(loading);
+        assertThat(meterRegistry.get("chat.file-cache.size").gauge().value()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: вытесненный файл удаляется с диска только после завершения отдачи")
+    void testRelease_evictedWhileServed_deletedAfterRelease() {
+        GridFSFile served = gridFsFile(15);
+        AtomicInteger reads = new AtomicInteger();
+
+        cache(served, reads);
+        FileDiskCache.Entry entry = fileCache.acquire(served);
+        cache(gridFsFile(15), reads);
+
+        assertThat(fileCache.lookup(served.getObjectId().toHexString())).isNull();
+        assertThat(entry.getPath()).exists();
+
+        entry.release();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.notExists(entry.getPath()));
+    }
+
+    @Test
+    @DisplayName("Кэш файлов: файл больше допустимого размера не кэшируется")
+    void testAcquire_fileTooLarge_notCached() {
+        GridFSFile file = gridFsFile(16);
+        AtomicInteger reads = new AtomicInteger();
+
+        assertThat(fileCache.acquire(file)).isNull();
+        fileCache.cacheWhileStreaming(file, content(16, reads).get()).blockLast();
+        fileCache.onRangeMiss(file, content(16, reads));
+        fileCache.onRangeMiss(file, content(16, reads));
+
+        assertThat(reads).hasValue(1);
+        assertThat(fileCache.size()).isZero();
+    }
+
+    private void cache(GridFSFile file, AtomicInteger reads) {
+        fileCache.cacheWhileStreaming(file, content((int) file.getLength(), reads).get()).blockLast();
+        awaitCached(file);
+    }
+
+    private void awaitCached(GridFSFile file) {
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> fileCache.lookup(file.getObjectId().toHexString()) != null);
+    }
+
+    private GridFSFile gridFsFile(long length) {
+        return new GridFSFile(new BsonObjectId(new ObjectId()), "file.bin", length, 255, new Date(), new Document());
+    }
+
+    private Supplier<Flux<DataBuffer>> content(int length, AtomicInteger reads) {
+        return () -> counted(Mono.fromSupplier(() -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[length])), reads);
+    }
+
+    private Flux<DataBuffer> counted(Publisher<? extends DataBuffer> content, AtomicInteger reads) {
+        return Flux.<DataBuffer>from(content).doOnSubscribe(subscription -> reads.incrementAndGet());
+    }
+
+}
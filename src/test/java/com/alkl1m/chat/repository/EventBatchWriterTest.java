@@ -0,0 +1,193 @@
+package com.alkl1m.chat.repository;
+
+import com.alkl1m.chat.config.PersistenceProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+
+@SpringBootTest
+@ActiveProfiles("dev")
+@Testcontainers
+@DisplayName("Тестовые сценарии работы EventBatchWriter")
+class EventBatchWriterTest {
+
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:latest");
+
+    static {
+        mongoDBContainer.start();
+    }
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+        registry.add("spring.data.mongodb.database", () -> "testDB");
+    }
+
+    @Autowired
+    private EventBatchWriter eventBatchWriter;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private PersistenceProperties persistenceProperties;
+
+    @AfterEach
+    void cleanUp() {
+        eventRepository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("Пакетная запись: все события из нескольких пакетов сохраняются в базу данных")
+    void testWrite_manyEvents_allEventsSaved() {
+        int count = 1_200;
+
+        for (int i = 0; i < count; i++) {
+            eventBatchWriter.write(Event.builder()
+                    .channelId("batchChannel")
+                    .type(Type.CHAT_MESSAGE)
+                    .message("message-" + i)
+                    .build());
+        }
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> eventRepository.findByChannelId("batchChannel").count().block(), equalTo((long) count));
+    }
+
+    @Test
+    @DisplayName("Пакетная запись: идентификатор события назначается до записи в базу данных")
+    void testWrite_eventWithoutId_idAssignedImmediately() {
+        Event event = Event.builder()
+                .channelId("batchChannel")
+                .type(Type.CHAT_MESSAGE)
+                .message("message")
+                .build();
+
+        eventBatchWriter.write(event);
+
+        assertThat(event.getId()).isNotNull();
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> eventRepository.existsById(event.getId()).block(), equalTo(true));
+    }
+
+    @Test
+    @DisplayName("Пакетная запись: документы, записанные до сбоя, не считаются ошибкой при повторе пакета")
+    void testWrite_batchPartiallyPersisted_countedAsSaved() {
+        double failuresBefore = meterRegistry.get("chat.persistence.failures").counter().count();
+        Event persisted = Event.builder()
+                .id(new ObjectId().toHexString())
+                .channelId("batchChannel")
+                .type(Type.CHAT_MESSAGE)
+                .message("persisted")
+                .build();
+        eventRepository.save(persisted).block();
+        Event missing = Event.builder()
+                .channelId("batchChannel")
+                .type(Type.CHAT_MESSAGE)
+                .message("missing")
+                .build();
+
+        eventBatchWriter.write(persisted);
+        eventBatchWriter.write(missing);
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> eventRepository.existsById(missing.getId()).block(), equalTo(true));
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> meterRegistry.get("chat.persistence.pending").gauge().value(), equalTo(0.0));
+        assertThat(meterRegistry.get("chat.persistence.failures").counter().count()).isEqualTo(failuresBefore);
+        assertThat(eventRepository.findByChannelId("batchChannel").count().block()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Пакетная запись: документ, не прошедший проверку схемы, не повторяется, учитывается как ошибка и не попадает в размер пакета")
+    void testWrite_documentValidationFailed_notRetried() {
+        if (!mongoTemplate.collectionExists(Event.class).block()) {
+            mongoTemplate.createCollection(Event.class).block();
+        }
+        setValidator(new Document("message", new Document("$ne", "invalid")));
+        try {
+            double failuresBefore = meterRegistry.get("chat.persistence.failures").counter().count();
+            double retriesBefore = meterRegistry.get("chat.persistence.retries").counter().count();
+            double batchedBefore = meterRegistry.get("chat.persistence.batch.size").summary().totalAmount();
+            Event invalid = Event.builder()
+                    .channelId("batchChannel")
+                    .type(Type.CHAT_MESSAGE)
+                    .message("invalid")
+                    .build();
+            Event valid = Event.builder()
+                    .channelId("batchChannel")
+                    .type(Type.CHAT_MESSAGE)
+                    .message("valid")
+                    .build();
+
+            eventBatchWriter.write(invalid);
+            eventBatchWriter.write(valid);
+
+            await()
+                    .atMost(Duration.ofSeconds(5))
+                    .until(() -> meterRegistry.get("chat.persistence.pending").gauge().value(), equalTo(0.0));
+            assertThat(eventRepository.existsById(valid.getId()).block()).isTrue();
+            assertThat(eventRepository.existsById(invalid.getId()).block()).isFalse();
+            assertThat(meterRegistry.get("chat.persistence.failures").counter().count()).isEqualTo(failuresBefore + 1);
+            assertThat(meterRegistry.get("chat.persistence.retries").counter().count()).isEqualTo(retriesBefore);
+            assertThat(meterRegistry.get("chat.persistence.batch.size").summary().totalAmount()).isEqualTo(batchedBefore + 1);
+        } finally {
+            setValidator(new Document());
+        }
+    }
+
+    @Test
+    @DisplayName("Пакетная запись: событие после остановки отбрасывается и не остается в очереди")
+    void testWrite_afterStop_eventDropped() {
+        SimpleMeterRegistry writerMeters = new SimpleMeterRegistry();
+        EventBatchWriter writer = new EventBatchWriter(mongoTemplate, persistenceProperties, writerMeters);
+        writer.start();
+        writer.stop();
+
+        boolean accepted = writer.write(Event.builder()
+                .channelId("batchChannel")
+                .type(Type.CHAT_MESSAGE)
+                .message("late")
+                .build());
+
+        assertThat(accepted).isFalse();
+        assertThat(writerMeters.get("chat.persistence.pending").gauge().value()).isZero();
+        assertThat(writerMeters.get("chat.persistence.dropped").counter().count()).isEqualTo(1);
+    }
+
+    private void setValidator(Document validator) {
+        mongoTemplate.executeCommand(new Document("collMod", mongoTemplate.getCollectionName(Event.class))
+                .append("validator", validator)).block();
+    }
+
+}
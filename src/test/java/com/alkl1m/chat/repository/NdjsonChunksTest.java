@@ -0,0 +1,88 @@
+package com.alkl1m.chat.repository;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестовые сценарии работы NdjsonChunks")
+class NdjsonChunksTest {
+
+    private final JsonUtils jsonUtils = new JsonUtils(new ObjectMapper());
+
+    @Test
+    @DisplayName("Нарезка NDJSON: фрагменты не превышают порога больше чем на одну строку и вместе дают все события")
+    void testAppend_manyEvents_chunkedBySize() {
+        List<byte[]> chunks = new ArrayList<>();
+        try (NdjsonChunks encoder = new NdjsonChunks(jsonUtils, 1024, false)) {
+            for (int i = 0; i < 100; i++) {
+                byte[] chunk = encoder.append(event(i));
+                if (chunk != null) {
+                    chunks.add(chunk);
+                }
+            }
+            chunks.add(encoder.finish());
+        }
+
+        assertThat(chunks).hasSizeGreaterThan(2);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length).isLessThan(1024 + 256));
+        assertThat(messages(concat(chunks))).hasSize(100).startsWith("Message 0").endsWith("Message 99");
+    }
+
+    @Test
+    @DisplayName("Сжатие NDJSON: фрагменты образуют один поток gzip с полной выгрузкой")
+    void testFinish_gzip_chunksFormSingleStream() throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        try (NdjsonChunks encoder = new NdjsonChunks(jsonUtils, 256, true)) {
+            for (int i = 0; i < 1000; i++) {
+                byte[] chunk = encoder.append(event(i));
+                if (chunk != null) {
+                    chunks.add(chunk);
+                }
+            }
+            chunks.add(encoder.finish());
+        }
+
+        byte[] compressed = concat(chunks);
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] ndjson = input.readAllBytes();
+            assertThat(messages(ndjson)).hasSize(1000).endsWith("Message 999");
+            assertThat(compressed.length).isLessThan(ndjson.length / 4);
+        }
+    }
+
+    private Event event(int index) {
+        return Event.builder()
+                .id(String.format("%024x", index))
+                .channelId("channel1")
+                .type(Type.CHAT_MESSAGE)
+                .message("Message " + index)
+                .nickname("user1")
+                .build();
+    }
+
+    private List<String> messages(byte[] ndjson) {
+        return new String(ndjson, StandardCharsets.UTF_8).lines()
+                .map(line -> jsonUtils.toObject(line, Event.class).getMessage())
+                .toList();
+    }
+
+    private static byte[] concat(List<byte[]> chunks) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        chunks.forEach(output::writeBytes);
+        return output.toByteArray();
+    }
+
+}
@@ -1,12 +1,18 @@
 package com.alkl1m.chat.service.impl;
 
+import com.alkl1m.chat.channel.ChannelRegistry;
+import com.alkl1m.chat.config.SessionProperties;
 import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.entity.Type;
 import com.alkl1m.chat.repository.EventRepository;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -17,10 +23,15 @@ import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 
 @SpringBootTest
@@ -47,6 +58,12 @@ class ChatServiceImplTest {
     @Autowired
     private EventRepository eventRepository;
 
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Autowired
+    private SessionProperties sessionProperties;
+
     @AfterEach
     void cleanUp() {
         eventRepository.deleteAll().subscribe();
@@ -79,39 +96,27 @@ class ChatServiceImplTest {
     }
 
     @Test
-    @DisplayName("Обработка события: сохранение события 'пользователь присоединился' в базу данных")
-    void testProcessEvent_userJoined_eventSavedToDatabase() {
-        Event event = new Event();
-        event.setType(Type.USER_JOINED);
-        event.setMessage("User joined");
+    @DisplayName("Обработка события: события присутствия не сохраняются в базу данных")
+    void testProcessEvent_presenceEvents_notSavedToDatabase() {
+        Event joined = new Event();
+        joined.setType(Type.USER_JOINED);
+        joined.setMessage("User joined");
+        Event left = new Event();
+        left.setType(Type.USER_LEFT);
+        left.setMessage("User left");
+        Event message = new Event();
+        message.setType(Type.CHAT_MESSAGE);
+        message.setMessage("Hello");
         String channelId = "channel1";
 
-        chatService.processEvent(event, channelId);
-
-        await().atMost(5, TimeUnit.SECONDS)
-                .untilAsserted(() -> {
-                    Mono<Event> savedEvent = eventRepository.findById(event.getId());
-                    assertNotNull(savedEvent.block());
-                    assertEquals(Type.USER_JOINED, savedEvent.block().getType());
-                });
-    }
-
-    @Test
-    @DisplayName("Обработка события: сохранение события 'пользователь покинул' в базу данных")
-    void testProcessEvent_userLeft_eventSavedToDatabase() {
-        Event event = new Event();
-        event.setType(Type.USER_LEFT);
-        event.setMessage("User left");
-        String channelId = "channel1";
-
-        chatService.processEvent(event, channelId);
+        chatService.processEvent(joined, channelId);
+        chatService.processEvent(left, channelId);
+        chatService.processEvent(message, channelId);
 
         await().atMost(5, TimeUnit.SECONDS)
-                .untilAsserted(() -> {
-                    Mono<Event> savedEvent = eventRepository.findById(event.getId());
-                    assertNotNull(savedEvent.block());
-                    assertEquals(Type.USER_LEFT, savedEvent.block().getType());
-                });
+                .untilAsserted(() -> assertNotNull(eventRepository.findById(message.getId()).block()));
+        assertNull(eventRepository.findById(joined.getId()).block());
+        assertNull(eventRepository.findById(left.getId()).block());
     }
 
     @Test
@@ -165,4 +170,129 @@ class ChatServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Сообщение с файлом: при ошибке сохранения событие не рассылается, а отправитель получает уведомление")
+    void testHandleFileMessage_invalidFileData_notDispatchedAndSenderNotified() {
+        Event event = Event.builder()
+                .channelId("fileFailureChannel")
+                .type(Type.FILE_MESSAGE)
+                .nickname("user1")
+                .filename("broken.txt")
+                .fileData("not base64!")
+                .build();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        StepVerifier.create(chatService.getChannelFrames("fileFailureChannel"))
+                .then(() -> chatService.handleFileMessage(event, () -> failed.set(true)))
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertTrue(failed.get());
+        assertNull(event.getFileId());
+    }
+
+    @Test
+    @DisplayName("Переподключение: пропущенные события досылаются по порядку перед живыми событиями")
+    void testGetChannelFrames_withLastEventId_replaysMissedEventsBeforeLive() {
+        List<Event> history = eventRepository.saveAll(List.of(
+                        Event.builder().id(new ObjectId().toString()).channelId("replayChannel").type(Type.CHAT_MESSAGE).message("Seen").build(),
+                        Event.builder().id(new ObjectId().toString()).channelId("replayChannel").type(Type.CHAT_MESSAGE).message("Missed 1").build(),
+                        Event.builder().id(new ObjectId().toString()).channelId("replayChannel").type(Type.CHAT_MESSAGE).message("Missed 2").build()))
+                .collectList()
+                .block();
+
+        Event live = new Event();
+        live.setType(Type.CHAT_MESSAGE);
+        live.setMessage("Live");
+
+        StepVerifier.create(chatService.getChannelFrames("replayChannel", history.get(0).getId(), () -> { })
+                        .map(frame -> frame.getEvent().getMessage()))
+                .expectNext("Missed 1", "Missed 2")
+                .then(() -> chatService.processEvent(live, "replayChannel"))
+                .expectNext("Live")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Переподключение: досылка сверх лимита ограничивается самыми старыми событиями и сообщает о пропуске")
+    void testGetChannelFrames_moreMissedThanLimit_reportsTruncation() {
+        int maxEvents = sessionProperties.getReplay().getMaxEvents();
+        sessionProperties.getReplay().setMaxEvents(2);
+        try {
+            List<Event> history = eventRepository.saveAll(List.of(
+                            Event.builder().id(new ObjectId().toString()).channelId("truncatedChannel").type(Type.CHAT_MESSAGE).message("Seen").build(),
+                            Event.builder().id(new ObjectId().toString()).channelId("truncatedChannel").type(Type.CHAT_MESSAGE).message("Missed 1").build(),
+                            Event.builder().id(new ObjectId().toString()).channelId("truncatedChannel").type(Type.CHAT_MESSAGE).message("Missed 2").build(),
+                            Event.builder().id(new ObjectId().toString()).channelId("truncatedChannel").type(Type.CHAT_MESSAGE).message("Missed 3").build()))
+                    .collectList()
+                    .block();
+            AtomicBoolean truncated = new AtomicBoolean();
+
+            StepVerifier.create(chatService.getChannelFrames("truncatedChannel", history.get(0).getId(), () -> truncated.set(true))
+                            .map(frame -> frame.getEvent().getMessage()))
+                    .expectNext("Missed 1", "Missed 2")
+                    .thenAwait(Duration.ofMillis(200))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+            assertTrue(truncated.get());
+        } finally {
+            sessionProperties.getReplay().setMaxEvents(maxEvents);
+        }
+    }
+
+    @Test
+    @DisplayName("Переподключение: живое файловое событие с идентификатором меньше lastEventId доставляется клиенту")
+    void testGetChannelFrames_withLastEventId_deliversLiveEventWithOlderId() {
+        String uploadStartedId = new ObjectId().toString();
+        Event seen = eventRepository.save(Event.builder()
+                        .id(new ObjectId().toString())
+                        .channelId("replayFileChannel")
+                        .type(Type.CHAT_MESSAGE)
+                        .message("Seen")
+                        .build())
+                .block();
+
+        Event fileEvent = Event.builder()
+                .id(uploadStartedId)
+                .channelId("replayFileChannel")
+                .type(Type.FILE_MESSAGE)
+                .message("/api/events/download/" + uploadStartedId)
+                .build();
+
+        StepVerifier.create(chatService.getChannelFrames("replayFileChannel", seen.getId(), () -> { })
+                        .map(frame -> frame.getEvent().getId()))
+                .then(() -> channelRegistry.getOrCreate("replayFileChannel").emit(fileEvent))
+                .expectNext(uploadStartedId)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Переподключение: файл, объявленный после lastEventId, досылается, хотя загрузка началась раньше")
+    void testGetChannelFrames_fileAnnouncedAfterLastEventId_replayed() {
+        Sinks.Many<DataBuffer> content = Sinks.many().unicast().onBackpressureBuffer();
+        Mono<Event> upload = chatService.uploadFile("replayUploadChannel", "user1", "late.txt", MediaType.TEXT_PLAIN, content.asFlux())
+                .cache();
+        upload.subscribe();
+
+        Event seen = eventRepository.save(Event.builder()
+                        .id(new ObjectId().toString())
+                        .channelId("replayUploadChannel")
+                        .type(Type.CHAT_MESSAGE)
+                        .message("Seen")
+                        .build())
+                .block();
+        content.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap("late".getBytes()));
+        content.tryEmitComplete();
+        Event announced = upload.block(Duration.ofSeconds(5));
+
+        assertTrue(announced.getFileId().compareTo(seen.getId()) < 0);
+        StepVerifier.create(chatService.getChannelFrames("replayUploadChannel", seen.getId(), () -> { })
+                        .map(frame -> frame.getEvent().getId()))
+                .expectNext(announced.getId())
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
 }
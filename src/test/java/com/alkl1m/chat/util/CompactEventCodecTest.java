@@ -0,0 +1,94 @@
+package com.alkl1m.chat.util;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.exception.JsonDeserializationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестовые сценарии работы CompactEventCodec")
+class CompactEventCodecTest {
+
+    private final CompactEventCodec codec = new CompactEventCodec();
+
+    @Test
+    @DisplayName("Компактный формат: событие восстанавливается без идентификатора канала и короче JSON")
+    void testEncodeDecode_chatMessage_roundTripsWithoutChannelId() {
+        Event event = Event.builder()
+                .id("6751c1f2a3b4c5d6e7f80912")
+                .channelId("channel1")
+                .type(Type.USER_LEFT)
+                .message("Hello")
+                .nickname("user")
+                .build();
+
+        byte[] encoded = codec.encode(event);
+        Event decoded = codec.decode(DefaultDataBufferFactory.sharedInstance.wrap(encoded));
+
+        assertThat(decoded.getId()).isEqualTo(event.getId());
+        assertThat(decoded.getType()).isEqualTo(Type.USER_LEFT);
+        assertThat(decoded.getMessage()).isEqualTo("Hello");
+        assertThat(decoded.getNickname()).isEqualTo("user");
+        assertThat(decoded.getFilename()).isNull();
+        assertThat(decoded.getFileId()).isNull();
+        assertThat(decoded.getChannelId()).isNull();
+        assertThat(new String(encoded, StandardCharsets.ISO_8859_1)).doesNotContain("channel1", "nickname");
+        assertThat(encoded.length).isLessThan(new JsonUtils(new ObjectMapper()).toJSONBytes(event).length / 2);
+    }
+
+    @Test
+    @DisplayName("Компактный формат: файловое событие передает идентификатор файла в GridFS")
+    void testEncodeDecode_fileMessage_roundTripsFileId() {
+        Event event = Event.builder()
+                .id("6751c1f2a3b4c5d6e7f80913")
+                .type(Type.FILE_MESSAGE)
+                .message("/api/events/download/6751c1f2a3b4c5d6e7f80900")
+                .nickname("user")
+                .filename("report.pdf")
+                .fileId("6751c1f2a3b4c5d6e7f80900")
+                .build();
+
+        Event decoded = codec.decode(codec.encode(event));
+
+        assertThat(decoded.getId()).isEqualTo(event.getId());
+        assertThat(decoded.getType()).isEqualTo(Type.FILE_MESSAGE);
+        assertThat(decoded.getFilename()).isEqualTo("report.pdf");
+        assertThat(decoded.getFileId()).isEqualTo("6751c1f2a3b4c5d6e7f80900");
+    }
+
+    @Test
+    @DisplayName("Компактный формат: изменение состава канала передается со списками участников и их числом")
+    void testEncodeDecode_presence_roundTripsMembers() {
+        Event event = Event.builder()
+                .type(Type.PRESENCE)
+                .joined(List.of("user1", "user2"))
+                .left(List.of("user3"))
+                .memberCount(5)
+                .build();
+
+        Event decoded = codec.decode(codec.encode(event));
+
+        assertThat(decoded.getType()).isEqualTo(Type.PRESENCE);
+        assertThat(decoded.getJoined()).containsExactly("user1", "user2");
+        assertThat(decoded.getLeft()).containsExactly("user3");
+        assertThat(decoded.getMemberCount()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Компактный формат: некорректные данные отклоняются исключением десериализации")
+    void testDecode_invalidPayload_throwsException() {
+        byte[] json = "{\"type\":\"CHAT_MESSAGE\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> codec.decode(json))
+                .isInstanceOf(JsonDeserializationException.class);
+    }
+
+}
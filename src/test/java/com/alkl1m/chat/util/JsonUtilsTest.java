@@ -0,0 +1,83 @@
+package com.alkl1m.chat.util;
+
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.exception.JsonDeserializationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестовые сценарии работы JsonUtils")
+class JsonUtilsTest {
+
+    private final JsonUtils jsonUtils = new JsonUtils(new ObjectMapper());
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    @Test
+    @DisplayName("Разбор буфера: событие читается из байтов UTF-8 в прямой памяти без промежуточной строки")
+    void testToObject_directBuffer_eventDecoded() {
+        DataBuffer buffer = bufferFactory.allocateBuffer(128);
+        buffer.write("{\"channelId\":\"channel1\",\"type\":\"CHAT_MESSAGE\",\"message\":\"Привет\",\"nickname\":\"user\"}",
+                StandardCharsets.UTF_8);
+        try {
+            Event event = jsonUtils.toObject(buffer, Event.class);
+
+            assertThat(event.getChannelId()).isEqualTo("channel1");
+            assertThat(event.getType()).isEqualTo(Type.CHAT_MESSAGE);
+            assertThat(event.getMessage()).isEqualTo("Привет");
+            assertThat(event.getNickname()).isEqualTo("user");
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @Test
+    @DisplayName("Отметка получения: receivedAt передается в JSON, но не сохраняется в документ MongoDB")
+    void testToJSONBytes_receivedAt_serializedButNotPersisted() {
+        Event event = Event.builder().channelId("channel1").type(Type.CHAT_MESSAGE).receivedAt(42L).build();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        Document document = new Document();
+
+        converter.write(event, document);
+
+        assertThat(new String(jsonUtils.toJSONBytes(event), StandardCharsets.UTF_8)).contains("\"receivedAt\":42");
+        assertThat(document).doesNotContainKey("receivedAt").containsKey("channelId");
+    }
+
+    @Test
+    @DisplayName("Ошибка разбора: сообщение об ошибке содержит только начало большого фрейма")
+    void testToObject_largeInvalidPayload_errorMessageBounded() {
+        String payload = "{\"message\":\"" + "x".repeat(10_000);
+        DataBuffer buffer = bufferFactory.allocateBuffer(payload.length());
+        buffer.write(payload, StandardCharsets.UTF_8);
+        try {
+            assertThatThrownBy(() -> jsonUtils.toObject(buffer, Event.class))
+                    .isInstanceOf(JsonDeserializationException.class)
+                    .message()
+                    .startsWith("Invalid JSON format (first 128 of 10012 bytes): {\"message\":\"xxx")
+                    .hasSizeLessThan(JsonUtils.MAX_ERROR_PREVIEW + 64);
+            assertThatThrownBy(() -> jsonUtils.toObject(payload, Event.class))
+                    .isInstanceOf(JsonDeserializationException.class)
+                    .message()
+                    .hasSizeLessThan(JsonUtils.MAX_ERROR_PREVIEW + 64);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.alkl1m.chat.websocket;
 import com.alkl1m.chat.entity.Event;
 import com.alkl1m.chat.entity.Type;
 import com.alkl1m.chat.repository.EventRepository;
+import com.alkl1m.chat.util.CompactEventCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,11 +13,14 @@ import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
 import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
 import org.springframework.web.reactive.socket.client.WebSocketClient;
 import org.testcontainers.containers.MongoDBContainer;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -25,6 +29,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.Matchers.equalTo;
 
@@ -77,6 +82,89 @@ class ChatSocketHandlerTest {
         verifySavedEvents(count);
     }
 
+    @Test
+    @DisplayName("Тест проверяет обмен событиями в компактном бинарном формате. " +
+            "Клиент запрашивает подпротокол CBOR и отправляет сообщение без идентификатора канала. " +
+            "Ожидается, что сервер выберет этот подпротокол, вернет событие бинарным фреймом " +
+            "и сохранит его в канале из параметров сессии.")
+    void testHandle_withCborSubProtocol_exchangesBinaryFrames() throws URISyntaxException {
+        WebSocketClient client = new ReactorNettyWebSocketClient();
+        CompactEventCodec codec = new CompactEventCodec();
+        AtomicReference<String> subProtocolRef = new AtomicReference<>();
+        AtomicReference<WebSocketMessage.Type> typeRef = new AtomicReference<>();
+        AtomicReference<Event> eventRef = new AtomicReference<>();
+        Event event = Event.builder()
+                .type(Type.CHAT_MESSAGE)
+                .message("binary-message")
+                .nickname("user")
+                .build();
+
+        client.execute(getUrl("/ws?channelId=binary"), new WebSocketHandler() {
+                    @Override
+                    public List<String> getSubProtocols() {
+                        return List.of(WireProtocol.CBOR.getSubProtocol());
+                    }
+
+                    @Override
+                    public Mono<Void> handle(WebSocketSession session) {
+                        subProtocolRef.set(session.getHandshakeInfo().getSubProtocol());
+                        return session.send(Mono.just(session.binaryMessage(factory -> factory.wrap(codec.encode(event)))))
+                                .then(session.receive()
+                                        .next()
+                                        .doOnNext(message -> {
+                                            typeRef.set(message.getType());
+                                            eventRef.set(codec.decode(message.getPayload()));
+                                        }))
+                                .then();
+                    }
+                })
+                .block(TIMEOUT);
+
+        assertThat(subProtocolRef.get()).isEqualTo(WireProtocol.CBOR.getSubProtocol());
+        assertThat(typeRef.get()).isEqualTo(WebSocketMessage.Type.BINARY);
+        assertThat(eventRef.get().getMessage()).isEqualTo("binary-message");
+        assertThat(eventRef.get().getType()).isEqualTo(Type.CHAT_MESSAGE);
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> eventRepository.findAll()
+                        .filter(saved -> "binary".equals(saved.getChannelId()))
+                        .count()
+                        .block(), equalTo(1L));
+        eventRepository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("Тест проверяет учет присутствия по открытой сессии. " +
+            "Клиент подключается с именем пользователя и ничего не отправляет. " +
+            "Ожидается, что сервер сам разошлет в канал изменение состава с этим пользователем " +
+            "и числом участников, не сохраняя его в MongoDB.")
+    void testHandle_withNickname_broadcastsPresenceDiff() throws URISyntaxException {
+        WebSocketClient client = new ReactorNettyWebSocketClient();
+        ObjectMapper mapper = new ObjectMapper();
+        AtomicReference<Event> diffRef = new AtomicReference<>();
+
+        client.execute(getUrl("/ws?channelId=presence&nickname=user%201"), session ->
+                        session.receive()
+                                .next()
+                                .doOnNext(message -> {
+                                    try {
+                                        diffRef.set(mapper.readValue(message.getPayloadAsText(), Event.class));
+                                    } catch (Exception e) {
+                                        throw new RuntimeException(e);
+                                    }
+                                })
+                                .then())
+                .block(TIMEOUT);
+
+        assertThat(diffRef.get().getType()).isEqualTo(Type.PRESENCE);
+        assertThat(diffRef.get().getJoined()).containsExactly("user 1");
+        assertThat(diffRef.get().getMemberCount()).isEqualTo(1);
+        assertThat(eventRepository.findAll()
+                .filter(saved -> "presence".equals(saved.getChannelId()))
+                .count()
+                .block()).isZero();
+    }
+
     private Flux<String> createInputFlux(int count) {
         return Flux.range(1, count)
                 .map(index -> {
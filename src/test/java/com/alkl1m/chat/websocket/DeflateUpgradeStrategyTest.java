@@ -0,0 +1,138 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.websocketx.CorruptedWebSocketFrameException;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы DeflateUpgradeStrategy")
+class DeflateUpgradeStrategyTest {
+
+    private static final String LARGE_MESSAGE = "Hello everyone, this is a chat message. ".repeat(50);
+    private static final String SMALL_MESSAGE = "Hi";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DisposableServer server;
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    @DisplayName("Сжатие: клиент, запросивший permessage-deflate, получает сжатые большие фреймы, а малые - без сжатия")
+    void testUpgrade_clientRequestsDeflate_compressesLargeFramesOnly() {
+        startServer();
+        AtomicReference<String> extensionsRef = new AtomicReference<>();
+
+        List<String> received = HttpClient.create()
+                .websocket(WebsocketClientSpec.builder().compress(true).build())
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> {
+                    extensionsRef.set(in.headers().get(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS));
+                    return in.receive().asString().take(2);
+                })
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(received).containsExactly(LARGE_MESSAGE, SMALL_MESSAGE);
+        assertThat(extensionsRef.get()).contains("permessage-deflate");
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(meterRegistry.get("chat.websocket.deflate.input").counter().count())
+                        .isEqualTo(LARGE_MESSAGE.length()));
+        assertThat(meterRegistry.get("chat.websocket.deflate.sessions").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.websocket.deflate.output").counter().count()).isLessThan(LARGE_MESSAGE.length() / 4.0);
+        assertThat(meterRegistry.get("chat.websocket.deflate.skipped").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.websocket.deflate.time").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.websocket.deflate.ratio").gauge().value()).isLessThan(0.25);
+    }
+
+    @Test
+    @DisplayName("Сжатие: клиент без permessage-deflate получает фреймы без сжатия")
+    void testUpgrade_clientWithoutDeflate_sendsUncompressed() {
+        startServer();
+
+        List<String> received = HttpClient.create()
+                .websocket()
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> in.receive().asString().take(2))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(received).containsExactly(LARGE_MESSAGE, SMALL_MESSAGE);
+        assertThat(meterRegistry.get("chat.websocket.deflate.sessions").counter().count()).isZero();
+        assertThat(meterRegistry.get("chat.websocket.deflate.input").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Сжатие: небольшой сжатый фрейм, распаковывающийся сверх лимита, закрывает сессию со статусом 1009")
+    void testReceive_frameInflatesPastLimit_sessionClosed() {
+        SessionProperties.Compression compression = new SessionProperties.Compression();
+        compression.setEnabled(true);
+        DeflateUpgradeStrategy strategy = DeflateUpgradeStrategy.create(compression, meterRegistry,
+                () -> WebsocketServerSpec.builder().maxFramePayloadLength(1024));
+        AtomicReference<Throwable> receiveError = new AtomicReference<>();
+
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/ws", (request, response) -> {
+                    strategy.prepare(request, response);
+                    return response.sendWebsocket((in, out) -> in.receive()
+                                    .doOnError(receiveError::set)
+                                    .onErrorResume(error -> Mono.empty())
+                                    .then(),
+                            WebsocketServerSpec.builder().maxFramePayloadLength(1024).build());
+                }))
+                .bindNow();
+
+        WebSocketCloseStatus closeStatus = HttpClient.create()
+                .websocket(WebsocketClientSpec.builder().compress(true).build())
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> out.sendString(Mono.just("x".repeat(64 * 1024)))
+                        .then()
+                        .thenMany(in.receiveCloseStatus()))
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertThat(closeStatus).isEqualTo(WebSocketCloseStatus.MESSAGE_TOO_BIG);
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(receiveError.get())
+                        .isInstanceOfSatisfying(CorruptedWebSocketFrameException.class,
+                                error -> assertThat(error.closeStatus()).isEqualTo(WebSocketCloseStatus.MESSAGE_TOO_BIG)));
+    }
+
+    private void startServer() {
+        SessionProperties.Compression compression = new SessionProperties.Compression();
+        compression.setEnabled(true);
+        DeflateUpgradeStrategy strategy = DeflateUpgradeStrategy.create(compression, meterRegistry);
+
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/ws", (request, response) -> {
+                    strategy.prepare(request, response);
+                    return response.sendWebsocket((in, out) -> out.sendString(Flux.just(LARGE_MESSAGE, SMALL_MESSAGE))
+                            .then(in.receive().then())
+                            .then(Mono.empty()));
+                }))
+                .bindNow();
+    }
+
+}
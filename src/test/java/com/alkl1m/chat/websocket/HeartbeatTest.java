@@ -0,0 +1,86 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.adapter.ReactorNettyWebSocketSession;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестовые сценарии работы Heartbeat")
+class HeartbeatTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DisposableServer server;
+
+    @BeforeEach
+    void setUp() {
+        SessionProperties properties = new SessionProperties();
+        properties.getHeartbeat().setInterval(Duration.ofMillis(50));
+        properties.getHeartbeat().setIdleTimeout(Duration.ofMillis(200));
+        HeartbeatMonitor monitor = new HeartbeatMonitor(properties, meterRegistry);
+
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/ws", (request, response) -> response.sendWebsocket((in, out) -> {
+                    HandshakeInfo handshakeInfo = new HandshakeInfo(URI.create(request.uri()), new HttpHeaders(), Mono.empty(), null);
+                    ReactorNettyWebSocketSession session = new ReactorNettyWebSocketSession(in, out, handshakeInfo,
+                            new NettyDataBufferFactory(ByteBufAllocator.DEFAULT));
+                    Heartbeat heartbeat = monitor.attach(session);
+                    return session.send(heartbeat.pings())
+                            .and(session.receive().doOnNext(message -> heartbeat.onInbound()).then())
+                            .takeUntilOther(heartbeat.reaped());
+                })))
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    @DisplayName("Проверка живости: клиент, не отвечающий на ping, отключается со статусом молчания")
+    void testPings_silentClient_sessionReaped() {
+        WebSocketCloseStatus closeStatus = HttpClient.create()
+                .websocket(WebsocketClientSpec.builder().handlePing(true).build())
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> in.receiveCloseStatus())
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertThat(closeStatus).isNotNull();
+        assertThat(closeStatus.code()).isEqualTo(Heartbeat.IDLE_TIMEOUT.getCode());
+        assertThat(meterRegistry.get("chat.websocket.sessions.reaped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Проверка живости: клиент, отвечающий pong, остается подключенным дольше времени молчания")
+    void testPings_responsiveClient_sessionKept() {
+        HttpClient.create()
+                .websocket()
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> Mono.delay(Duration.ofMillis(600)))
+                .blockLast(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("chat.websocket.sessions.reaped").counter().count()).isZero();
+        assertThat(meterRegistry.get("chat.websocket.heartbeat.pings").counter().count()).isGreaterThanOrEqualTo(5);
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.config.SessionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.adapter.ReactorNettyWebSocketSession;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы InboundLimiter")
+class InboundLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Лимит сессии: фреймы сверх емкости корзины отвергаются, лимит другой сессии не затрагивается")
+    void testTryAcquire_sessionBurstExceeded_framesRejected() {
+        SessionProperties properties = new SessionProperties();
+        properties.getInbound().setSessionLimit(new SessionProperties.RateLimit(0.001, 5));
+        InboundLimiter limiter = new InboundLimiter(properties, meterRegistry);
+        InboundLimit first = limiter.attach("channel");
+        InboundLimit second = limiter.attach("channel");
+
+        long admitted = IntStream.range(0, 8).filter(i -> first.tryAcquire()).count();
+
+        assertThat(admitted).isEqualTo(5);
+        assertThat(second.tryAcquire()).isTrue();
+        assertThat(rejected("session_rate")).isEqualTo(3);
+        assertThat(rejected("channel_rate")).isZero();
+    }
+
+    @Test
+    @DisplayName("Лимит сессии: после серии отброшенных подряд фреймов сессию нужно закрыть")
+    void testIsRejectLimitReached_rejectedInRow_limitReached() {
+        SessionProperties properties = new SessionProperties();
+        properties.getInbound().setSessionLimit(new SessionProperties.RateLimit(0.001, 1));
+        properties.getInbound().setMaxRejectedFrames(3);
+        InboundLimit limit = new InboundLimiter(properties, meterRegistry).attach("channel");
+
+        assertThat(limit.tryAcquire()).isTrue();
+        IntStream.range(0, 2).forEach(i -> limit.tryAcquire());
+        assertThat(limit.isRejectLimitReached()).isFalse();
+
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.isRejectLimitReached()).isTrue();
+        assertThat(rejected("session_rate")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Лимит канала: корзина общая для сессий канала и забывается после закрытия последней сессии")
+    void testTryAcquire_channelBurstExceeded_sharedBetweenSessions() {
+        SessionProperties properties = new SessionProperties();
+        properties.getInbound().setSessionLimit(new SessionProperties.RateLimit(0, 0));
+        properties.getInbound().setChannelLimit(new SessionProperties.RateLimit(0.001, 4));
+        InboundLimiter limiter = new InboundLimiter(properties, meterRegistry);
+        InboundLimit first = limiter.attach("channel");
+        InboundLimit second = limiter.attach("channel");
+        InboundLimit other = limiter.attach("other");
+
+        long admitted = IntStream.range(0, 3).filter(i -> first.tryAcquire()).count()
+                + IntStream.range(0, 3).filter(i -> second.tryAcquire()).count();
+
+        assertThat(admitted).isEqualTo(4);
+        assertThat(other.tryAcquire()).isTrue();
+        assertThat(rejected("channel_rate")).isEqualTo(2);
+
+        first.release();
+        second.release();
+        other.release();
+        assertThat(limiter.channelBuckets()).isZero();
+    }
+
+    @Test
+    @DisplayName("Размер сообщения: собранное сообщение сверх лимита отвергается до декодирования")
+    void testIsTooLarge_payloadOverLimit_rejected() {
+        SessionProperties properties = new SessionProperties();
+        properties.getInbound().setMaxFrameSize(DataSize.ofBytes(1024));
+        InboundLimit limit = new InboundLimiter(properties, meterRegistry).attach("channel");
+
+        assertThat(limit.isTooLarge(textMessage(1024))).isFalse();
+        assertThat(limit.isTooLarge(textMessage(1025))).isTrue();
+        assertThat(rejected("frame_size")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Размер фрейма: сообщение сверх лимита закрывает сессию со статусом 1009 и учитывается в метрике")
+    void testReceive_frameTooLarge_sessionClosed() {
+        InboundLimiter limiter = new InboundLimiter(new SessionProperties(), meterRegistry);
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/ws", (request, response) -> response.sendWebsocket((in, out) -> {
+                    HandshakeInfo handshakeInfo = new HandshakeInfo(URI.create(request.uri()), new HttpHeaders(), Mono.empty(), null);
+                    ReactorNettyWebSocketSession session = new ReactorNettyWebSocketSession(in, out, handshakeInfo,
+                            new NettyDataBufferFactory(ByteBufAllocator.DEFAULT), 1024);
+                    InboundLimit inboundLimit = limiter.attach("channel");
+                    return session.receive()
+                            .doOnError(inboundLimit::onReceiveError)
+                            .doFinally(signal -> inboundLimit.release())
+                            .then();
+                }, WebsocketServerSpec.builder().maxFramePayloadLength(1024).build())))
+                .bindNow();
+        try {
+            WebSocketCloseStatus closeStatus = HttpClient.create()
+                    .websocket()
+                    .uri("ws://localhost:" + server.port() + "/ws")
+                    .handle((in, out) -> out.sendString(Mono.just("x".repeat(4096)))
+                            .then()
+                            .thenMany(in.receiveCloseStatus()))
+                    .blockFirst(Duration.ofSeconds(5));
+
+            assertThat(closeStatus).isEqualTo(WebSocketCloseStatus.MESSAGE_TOO_BIG);
+            await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> assertThat(rejected("frame_size")).isEqualTo(1));
+        } finally {
+            server.disposeNow();
+        }
+    }
+
+    private WebSocketMessage textMessage(int size) {
+        return new WebSocketMessage(WebSocketMessage.Type.TEXT, DefaultDataBufferFactory.sharedInstance.wrap(new byte[size]));
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("chat.websocket.inbound.rejected").tag("reason", reason).counter().count();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.config.SessionProperties;
+import com.alkl1m.chat.entity.Event;
+import com.alkl1m.chat.entity.Type;
+import com.alkl1m.chat.util.JsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестовые сценарии работы OutboundQueue")
+class OutboundQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Переполнение очереди: политика DROP_OLDEST оставляет самые новые события")
+    void testQueue_dropOldest_keepsNewestFrames() {
+        Sinks.Many<EventFrame> upstream = Sinks.many().multicast().directBestEffort();
+        OutboundQueue queue = createQueue(SlowConsumerPolicy.DROP_OLDEST, 2, () -> { });
+
+        StepVerifier.create(queue.attach(upstream.asFlux()), 0)
+                .then(() -> emitMessages(upstream, 4))
+                .thenRequest(2)
+                .expectNextMatches(frame -> "message-3".equals(frame.getEvent().getMessage()))
+                .expectNextMatches(frame -> "message-4".equals(frame.getEvent().getMessage()))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("chat.outbound.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Переполнение очереди: политика DROP_NEWEST оставляет самые старые события")
+    void testQueue_dropNewest_keepsOldestFrames() {
+        Sinks.Many<EventFrame> upstream = Sinks.many().multicast().directBestEffort();
+        OutboundQueue queue = createQueue(SlowConsumerPolicy.DROP_NEWEST, 2, () -> { });
+
+        StepVerifier.create(queue.attach(upstream.asFlux()), 0)
+                .then(() -> emitMessages(upstream, 4))
+                .thenRequest(2)
+                .expectNextMatches(frame -> "message-1".equals(frame.getEvent().getMessage()))
+                .expectNextMatches(frame -> "message-2".equals(frame.getEvent().getMessage()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Схлопывание присутствия: изменения состава объединяются на месте первого без потери имен")
+    void testQueue_presenceDiffs_mergedWithoutLosingMembers() {
+        Sinks.Many<EventFrame> upstream = Sinks.many().multicast().directBestEffort();
+        OutboundQueue queue = createQueue(SlowConsumerPolicy.DROP_OLDEST, 10, () -> { });
+        EventFrame firstDiff = createDiff(List.of("user1", "user2"), List.of("user3"), 4);
+
+        StepVerifier.create(queue.attach(upstream.asFlux()), 0)
+                .then(() -> {
+                    upstream.tryEmitNext(firstDiff);
+                    upstream.tryEmitNext(createFrame(Type.CHAT_MESSAGE, "user1", "hello"));
+                    upstream.tryEmitNext(createDiff(List.of("user4", "user3"), List.of("user2", "user5"), 3));
+                })
+                .thenRequest(10)
+                .assertNext(frame -> {
+                    assertThat(frame.getEvent().getType()).isEqualTo(Type.PRESENCE);
+                    assertThat(frame.getEvent().getJoined()).containsExactly("user1", "user4");
+                    assertThat(frame.getEvent().getLeft()).containsExactly("user5");
+                    assertThat(frame.getEvent().getMemberCount()).isEqualTo(3);
+                    assertThat(frame.getCreatedNanos()).isEqualTo(firstDiff.getCreatedNanos());
+                    assertThat(frame.size()).isPositive();
+                })
+                .expectNextMatches(frame -> frame.getEvent().getType() == Type.CHAT_MESSAGE)
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("chat.outbound.conflated").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Переполнение очереди: изменение состава канала не отбрасывается вместо сообщений")
+    void testQueue_dropOldest_keepsPresenceDiff() {
+        Sinks.Many<EventFrame> upstream = Sinks.many().multicast().directBestEffort();
+        OutboundQueue queue = createQueue(SlowConsumerPolicy.DROP_OLDEST, 2, () -> { });
+
+        StepVerifier.create(queue.attach(upstream.asFlux()), 0)
+                .then(() -> {
+                    upstream.tryEmitNext(createDiff(List.of("user1"), List.of(), 1));
+                    emitMessages(upstream, 3);
+                })
+                .thenRequest(2)
+                .expectNextMatches(frame -> frame.getEvent().getType() == Type.PRESENCE)
+                .expectNextMatches(frame -> "message-3".equals(frame.getEvent().getMessage()))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("chat.outbound.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Медленный клиент: политика DISCONNECT закрывает сессию при переполнении")
+    void testQueue_disconnect_closesSessionWhenFull() {
+        Sinks.Many<EventFrame> upstream = Sinks.many().multicast().directBestEffort();
+        AtomicBoolean closed = new AtomicBoolean();
+        OutboundQueue queue = createQueue(SlowConsumerPolicy.DISCONNECT, 2, () -> closed.set(true));
+
+        StepVerifier.create(queue.attach(upstream.asFlux()), 0)
+                .then(() -> emitMessages(upstream, 3))
+                .verifyComplete();
+
+        assertThat(closed).isTrue();
+        assertThat(meterRegistry.get("chat.outbound.disconnects").counter().count()).isEqualTo(1);
+    }
+
+    private OutboundQueue createQueue(SlowConsumerPolicy policy, int capacity, Runnable onSlowConsumer) {
+        SessionProperties properties = new SessionProperties();
+        properties.getOutbound().setPolicy(policy);
+        properties.getOutbound().setCapacity(capacity);
+        properties.getOutbound().setMaxLag(Duration.ofMinutes(1));
+        OutboundQueueFactory factory = new OutboundQueueFactory(properties, new JsonUtils(new ObjectMapper()), meterRegistry);
+        return new OutboundQueue(factory, properties.getOutbound(), onSlowConsumer);
+    }
+
+    private void emitMessages(Sinks.Many<EventFrame> upstream, int count) {
+        for (int i = 1; i <= count; i++) {
+            upstream.tryEmitNext(createFrame(Type.CHAT_MESSAGE, "user", "message-" + i));
+        }
+    }
+
+    private EventFrame createFrame(Type type, String nickname, String message) {
+        Event event = Event.builder()
+                .channelId("channel1")
+                .type(type)
+                .nickname(nickname)
+                .message(message)
+                .build();
+        return new EventFrame(event, new byte[0]);
+    }
+
+    private EventFrame createDiff(List<String> joined, List<String> left, int memberCount) {
+        Event event = Event.builder()
+                .channelId("channel1")
+                .type(Type.PRESENCE)
+                .joined(joined)
+                .left(left)
+                .memberCount(memberCount)
+                .build();
+        return new EventFrame(event, new byte[0]);
+    }
+
+}
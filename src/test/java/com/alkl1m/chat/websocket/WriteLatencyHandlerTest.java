@@ -0,0 +1,69 @@
+package com.alkl1m.chat.websocket;
+
+import com.alkl1m.chat.channel.EventFrame;
+import com.alkl1m.chat.entity.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.NettyPipeline;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("Тестовые сценарии работы WriteLatencyHandler")
+class WriteLatencyHandlerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DisposableServer server;
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    @DisplayName("Замер записи: фрейм события, полученного сервером, учитывается, остальные фреймы - нет")
+    void testWrite_receivedAndRemoteEvents_onlyReceivedEventRecorded() {
+        Event received = new Event();
+        received.setReceivedNanos(System.nanoTime());
+        EventFrame receivedFrame = new EventFrame(received, "received".getBytes(StandardCharsets.UTF_8));
+        EventFrame remoteFrame = new EventFrame(new Event(), "remote".getBytes(StandardCharsets.UTF_8));
+        WriteLatencyHandler handler = new WriteLatencyHandler(meterRegistry);
+
+        server = HttpServer.create()
+                .port(0)
+                .doOnChannelInit((observer, channel, remoteAddress) ->
+                        channel.pipeline().addBefore(NettyPipeline.ReactiveBridge, WriteLatencyHandler.NAME, handler))
+                .route(routes -> routes.get("/ws", (request, response) -> response.sendWebsocket((in, out) -> out
+                        .sendObject(Flux.just(receivedFrame, remoteFrame)
+                                .map(frame -> new TextWebSocketFrame(frame.payloadBuffer())))
+                        .then(in.receive().then())
+                        .then(Mono.empty()))))
+                .bindNow();
+
+        List<String> messages = HttpClient.create()
+                .websocket()
+                .uri("ws://localhost:" + server.port() + "/ws")
+                .handle((in, out) -> in.receive().asString().take(2))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(messages).containsExactly("received", "remote");
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(meterRegistry.get("chat.event.latency").tag("stage", "written").timer().count())
+                        .isEqualTo(1));
+    }
+
+}